@@ -0,0 +1,58 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.Beacon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Beacon hashCode and equals, which every map keyed by beacon calls once or more per packet.
+ * The beacons are separate parses of the same advertisement, so equals compares every identifier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeaconEqualityBenchmark {
+    private Beacon mBeacon;
+    private Beacon mSameBeacon;
+    private Beacon mOtherBeacon;
+
+    @Setup
+    public void setUp() {
+        mBeacon = beacon("1");
+        mSameBeacon = beacon("1");
+        mOtherBeacon = beacon("2");
+    }
+
+    private static Beacon beacon(String id3) {
+        return new Beacon.Builder().setId1("2f234454-cf6d-4a0f-adf2-f4911ba9ffa6").setId2("1").setId3(id3)
+                .setRssi(-60).setTxPower(-59).setBluetoothAddress("00:1B:DC:07:00:01").build();
+    }
+
+    @Benchmark
+    public int hashCodeBeacon() {
+        return mBeacon.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsSame() {
+        return mBeacon.equals(mSameBeacon);
+    }
+
+    @Benchmark
+    public boolean equalsOther() {
+        return mBeacon.equals(mOtherBeacon);
+    }
+}
@@ -0,0 +1,92 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.distance.CurveFittedDistanceCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distances of one cycle of 5000 beacons with mixed txPowers.  The exact formula is the
+ * Math.pow calculation CurveFittedDistanceCalculator made before it used lookup tables.  The
+ * lookup case calls calculateDistance per beacon, and the batch case makes one
+ * calculateDistances call.  Results are per beacon.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBatchBenchmark {
+    private static final int BEACONS = 5000;
+    private static final double COEFFICIENT1 = 0.42093;
+    private static final double COEFFICIENT2 = 6.9476;
+    private static final double COEFFICIENT3 = 0.54992;
+
+    private CurveFittedDistanceCalculator mCalculator;
+    private int[] mTxPowers;
+    private double[] mRssis;
+    private double[] mDistances;
+
+    @Setup
+    public void setUp() {
+        mCalculator = new CurveFittedDistanceCalculator(COEFFICIENT1, COEFFICIENT2, COEFFICIENT3);
+        Random random = new Random(42);
+        mTxPowers = new int[BEACONS];
+        mRssis = new double[BEACONS];
+        mDistances = new double[BEACONS];
+        for (int i = 0; i < BEACONS; i++) {
+            mTxPowers[i] = -65 + random.nextInt(12);
+            mRssis[i] = -100 + random.nextDouble() * 60;
+        }
+        // the lookup tables are built when a txPower is first seen, which is not measured here
+        mCalculator.calculateDistances(mTxPowers, mRssis, mDistances);
+    }
+
+    private static double exactDistance(int txPower, double rssi) {
+        if (rssi == 0) {
+            return -1.0;
+        }
+        double ratio = rssi * 1.0 / txPower;
+        if (ratio < 1.0) {
+            return Math.pow(ratio, 10);
+        }
+        return COEFFICIENT1 * Math.pow(ratio, COEFFICIENT2) + COEFFICIENT3;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BEACONS)
+    public double[] exactFormula() {
+        for (int i = 0; i < BEACONS; i++) {
+            mDistances[i] = exactDistance(mTxPowers[i], mRssis[i]);
+        }
+        return mDistances;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BEACONS)
+    public double[] lookupEach() {
+        for (int i = 0; i < BEACONS; i++) {
+            mDistances[i] = mCalculator.calculateDistance(mTxPowers[i], mRssis[i]);
+        }
+        return mDistances;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BEACONS)
+    public double[] batch() {
+        mCalculator.calculateDistances(mTxPowers, mRssis, mDistances);
+        return mDistances;
+    }
+}
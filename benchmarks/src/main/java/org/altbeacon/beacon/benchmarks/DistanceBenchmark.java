@@ -0,0 +1,50 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.distance.CurveFittedDistanceCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance from a running average rssi, with the coefficients of the default Nexus 5 model.
+ * Each operation cycles to the next of 1024 rssi values spread over the ranging range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    private static final int MASK = 1023;
+
+    private CurveFittedDistanceCalculator mCalculator;
+    private double[] mRssis;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mCalculator = new CurveFittedDistanceCalculator(0.42093, 6.9476, 0.54992);
+        Random random = new Random(42);
+        mRssis = new double[MASK + 1];
+        for (int i = 0; i < mRssis.length; i++) {
+            mRssis[i] = -100 + random.nextDouble() * 60;
+        }
+    }
+
+    @Benchmark
+    public double calculateDistance() {
+        mNext = (mNext + 1) & MASK;
+        return mCalculator.calculateDistance(-59, mRssis[mNext]);
+    }
+}
@@ -0,0 +1,92 @@
+package org.altbeacon.beacon.benchmarks;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.BeaconParser;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.altbeacon.beacon.RegionIndex;
+import org.altbeacon.beacon.service.DuplicateAdvertisementCache;
+import org.altbeacon.beacon.service.MonitorState;
+import org.altbeacon.beacon.service.RangeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A repeated AltBeacon advertisement, handled the way the service did before
+ * {@link DuplicateAdvertisementCache}, by parsing it and matching it against the regions again,
+ * and looked up in the cache instead.  The parsers are those of {@link ParserBenchmark}, with
+ * AltBeacon first, and one region matches the beacon.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuplicateCacheBenchmark {
+    private List<BeaconParser> mParsers;
+    private RegionIndex mIndex;
+    private DuplicateAdvertisementCache mCache;
+    private byte[] mRecord;
+    private BluetoothDevice mDevice;
+    private final List<Region> mMatched = new ArrayList<Region>();
+
+    @Setup
+    public void setUp() {
+        mParsers = ParserBenchmark.parsers();
+        ScanRecordCorpus corpus = ScanRecordCorpus.load();
+        mRecord = corpus.records.get(corpus.types.indexOf("altbeacon"));
+        mDevice = new BluetoothDevice("00:1B:DC:07:00:01");
+        Beacon beacon = parse();
+        mIndex = new RegionIndex();
+        mIndex.add(new Region("region", beacon.getId1(), null, null));
+        if (match(beacon) != 1) {
+            throw new IllegalStateException("The region does not match the beacon");
+        }
+        mCache = new DuplicateAdvertisementCache();
+        mCache.put(mDevice, mRecord, beacon, Collections.<Region>emptyList(),
+                Collections.<MonitorState>emptyList(), Collections.<RangeState>emptyList(),
+                mCache.getGeneration());
+    }
+
+    private Beacon parse() {
+        for (BeaconParser parser : mParsers) {
+            Beacon beacon = parser.fromScanData(mRecord, -60, mDevice);
+            if (beacon != null) {
+                return beacon;
+            }
+        }
+        return null;
+    }
+
+    private int match(Beacon beacon) {
+        mMatched.clear();
+        mIndex.matchingRegions(beacon, mMatched);
+        return mMatched.size();
+    }
+
+    @Benchmark
+    public int parseAndMatch() {
+        return match(parse());
+    }
+
+    @Benchmark
+    public DuplicateAdvertisementCache.Entry cacheHit() {
+        return mCache.get(mDevice, mRecord);
+    }
+}
@@ -0,0 +1,96 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing, formatting and decoding of the three identifier forms: a uuid, a decimal major or
+ * minor and a hex Eddystone namespace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentifierBenchmark {
+    private String mUuidString = "2f234454-cf6d-4a0f-adf2-f4911ba9ffa6";
+    private String mDecimalString = "65535";
+    private String mHexString = "0xedd1ebeac04e5defa017";
+    private Identifier mUuid;
+    private Identifier mDecimal;
+    private Identifier mHex;
+    private byte[] mScanData;
+
+    @Setup
+    public void setUp() {
+        mUuid = Identifier.parse(mUuidString);
+        mDecimal = Identifier.parse(mDecimalString);
+        mHex = Identifier.parse(mHexString);
+        mScanData = ScanRecordCorpus.hexToBytes(
+                "02011a1aff4c0002152f234454cf6d4a0fadf2f4911ba9ffa600010002c5");
+    }
+
+    @Benchmark
+    public Identifier parseUuid() {
+        return Identifier.parse(mUuidString);
+    }
+
+    @Benchmark
+    public Identifier parseDecimal() {
+        return Identifier.parse(mDecimalString);
+    }
+
+    @Benchmark
+    public Identifier parseHex() {
+        return Identifier.parse(mHexString);
+    }
+
+    @Benchmark
+    public String toStringUuid() {
+        return mUuid.toString();
+    }
+
+    @Benchmark
+    public String toStringDecimal() {
+        return mDecimal.toString();
+    }
+
+    @Benchmark
+    public String toStringHex() {
+        return mHex.toString();
+    }
+
+    /**
+     * Decodes the uuid of an iBeacon advertisement, as the parser does for each packet
+     */
+    @Benchmark
+    public Identifier fromBytesUuid() {
+        return Identifier.fromBytes(mScanData, 9, 25, false);
+    }
+
+    @Benchmark
+    public Identifier fromBytesMajor() {
+        return Identifier.fromBytes(mScanData, 25, 27, false);
+    }
+
+    /**
+     * The toString benchmarks above return the string the identifier keeps after its first call.
+     * This one formats a fresh identifier, as for an identifier seen for the first time.
+     */
+    @Benchmark
+    public String fromBytesToStringUuid() {
+        return Identifier.fromBytes(mScanData, 9, 25, false).toString();
+    }
+}
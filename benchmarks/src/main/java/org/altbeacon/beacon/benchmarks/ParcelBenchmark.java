@@ -0,0 +1,157 @@
+package org.altbeacon.beacon.benchmarks;
+
+import android.os.Parcel;
+
+import org.altbeacon.beacon.AltBeacon;
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.CompactParcel;
+import org.altbeacon.beacon.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The beacons of one ranging result, AltBeacons sharing a uuid, sent across the service boundary
+ * in the compact encoding of {@link CompactParcel} and in the field by field parcel layout it
+ * replaced.  The legacy layout is reproduced here from the old Beacon.writeToParcel, written as
+ * by writeParcelableArray: a count, then the class name and fields of each beacon.
+ *
+ * The android.os.Parcel stub keeps values in a list, so the times only compare the two encodings
+ * with each other.  The sizes each encoding takes in a real Parcel are printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParcelBenchmark {
+    @Param({"10", "100", "1000"})
+    public int beaconCount;
+
+    private List<Beacon> mBeacons;
+    private byte[] mCompact;
+    private Parcel mLegacy;
+
+    @Setup
+    public void setUp() {
+        mBeacons = new ArrayList<Beacon>(beaconCount);
+        for (int i = 0; i < beaconCount; i++) {
+            Beacon beacon = new AltBeacon.Builder().setId1("2f234454-cf6d-4a0f-adf2-f4911ba9ffa6")
+                    .setId2(String.valueOf(i / 100 + 1)).setId3(String.valueOf(i % 100 + 1))
+                    .setRssi(-60 - i % 30).setTxPower(-59).setManufacturer(0x0118)
+                    .setBluetoothAddress(String.format("00:1B:DC:07:%02X:%02X", i / 256, i % 256))
+                    .setDataFields(Arrays.asList(0L)).build();
+            beacon.setRunningAverageRssi(-60.5 - i % 30);
+            mBeacons.add(beacon);
+        }
+        mCompact = CompactParcel.encodeBeacons(mBeacons);
+        mLegacy = encodeLegacy();
+        Parcel compact = Parcel.obtain();
+        compact.writeByteArray(mCompact);
+        System.out.printf("%n%d beacons: legacy %d bytes, compact %d bytes%n",
+                beaconCount, mLegacy.dataSize(), compact.dataSize());
+        if (!decodeCompact().equals(mBeacons) || !decodeLegacy().equals(mBeacons)) {
+            throw new IllegalStateException("The beacons do not survive encoding");
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeCompact() {
+        return CompactParcel.encodeBeacons(mBeacons);
+    }
+
+    @Benchmark
+    public List<Beacon> decodeCompact() {
+        return CompactParcel.decodeBeacons(mCompact);
+    }
+
+    @Benchmark
+    public Parcel encodeLegacy() {
+        Parcel out = Parcel.obtain();
+        out.writeInt(mBeacons.size());
+        for (Beacon beacon : mBeacons) {
+            out.writeString(beacon.getClass().getName());
+            List<Identifier> identifiers = beacon.getIdentifiers();
+            out.writeInt(identifiers.size());
+            for (Identifier identifier : identifiers) {
+                out.writeString(identifier == null ? null : identifier.toString());
+            }
+            out.writeDouble(beacon.getRunningAverageRssi());
+            out.writeDouble(beacon.getDistance());
+            out.writeInt(beacon.getRssi());
+            out.writeInt(beacon.getTxPower());
+            out.writeString(beacon.getBluetoothAddress());
+            out.writeInt(beacon.getBeaconTypeCode());
+            out.writeInt(beacon.getServiceUuid());
+            out.writeInt(beacon.getDataFields().size());
+            for (Long dataField : beacon.getDataFields()) {
+                out.writeLong(dataField);
+            }
+            out.writeInt(beacon.getExtraDataFields().size());
+            for (Long dataField : beacon.getExtraDataFields()) {
+                out.writeLong(dataField);
+            }
+            out.writeInt(beacon.getManufacturer());
+            out.writeString(beacon.getBluetoothName());
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<Beacon> decodeLegacy() {
+        Parcel in = mLegacy;
+        in.setDataPosition(0);
+        int count = in.readInt();
+        List<Beacon> beacons = new ArrayList<Beacon>(count);
+        for (int i = 0; i < count; i++) {
+            Beacon.Builder builder = AltBeacon.class.getName().equals(in.readString())
+                    ? new AltBeacon.Builder() : new Beacon.Builder();
+            int size = in.readInt();
+            List<Identifier> identifiers = new ArrayList<Identifier>(size);
+            for (int j = 0; j < size; j++) {
+                String identifier = in.readString();
+                identifiers.add(identifier == null ? null : Identifier.parse(identifier));
+            }
+            builder.setIdentifiers(identifiers);
+            double runningAverageRssi = in.readDouble();
+            in.readDouble();
+            builder.setRssi(in.readInt());
+            builder.setTxPower(in.readInt());
+            builder.setBluetoothAddress(in.readString());
+            builder.setBeaconTypeCode(in.readInt());
+            builder.setServiceUuid(in.readInt());
+            int dataSize = in.readInt();
+            List<Long> dataFields = new ArrayList<Long>(dataSize);
+            for (int j = 0; j < dataSize; j++) {
+                dataFields.add(in.readLong());
+            }
+            builder.setDataFields(dataFields);
+            int extraDataSize = in.readInt();
+            List<Long> extraDataFields = new ArrayList<Long>(extraDataSize);
+            for (int j = 0; j < extraDataSize; j++) {
+                extraDataFields.add(in.readLong());
+            }
+            builder.setExtraDataFields(extraDataFields);
+            builder.setManufacturer(in.readInt());
+            builder.setBluetoothName(in.readString());
+            Beacon beacon = builder.build();
+            beacon.setRunningAverageRssi(runningAverageRssi);
+            beacons.add(beacon);
+        }
+        return beacons;
+    }
+}
@@ -0,0 +1,100 @@
+package org.altbeacon.beacon.benchmarks;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.altbeacon.beacon.AltBeaconParser;
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.BeaconParser;
+import org.altbeacon.beacon.BeaconParserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the scan record corpus with the parsers a typical app registers: AltBeacon, iBeacon and
+ * the three Eddystone frames.  Each operation parses one record, cycling through the corpus, so
+ * beacons and non-beacon advertisements are mixed as in a real scan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    static final String IBEACON_LAYOUT = "m:2-3=0215,i:4-19,i:20-21,i:22-23,p:24-24";
+
+    private List<BeaconParser> mParsers;
+    private BeaconParserRegistry mRegistry;
+    private byte[][] mRecords;
+    private BluetoothDevice[] mDevices;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mParsers = parsers();
+        mRegistry = new BeaconParserRegistry(mParsers);
+        ScanRecordCorpus corpus = ScanRecordCorpus.load();
+        mRecords = corpus.records.toArray(new byte[0][]);
+        mDevices = new BluetoothDevice[mRecords.length];
+        for (int i = 0; i < mRecords.length; i++) {
+            mDevices[i] = new BluetoothDevice(String.format("00:1B:DC:07:%02X:%02X", i / 256, i % 256));
+            // a benchmark of a parser that got the corpus wrong would measure the wrong work
+            boolean beacon = !corpus.types.get(i).equals("other");
+            if ((parseWithEachParser(i) != null) != beacon) {
+                throw new IllegalStateException("Unexpected parse result for record " + i);
+            }
+        }
+    }
+
+    static List<BeaconParser> parsers() {
+        List<BeaconParser> parsers = new ArrayList<BeaconParser>();
+        parsers.add(new AltBeaconParser());
+        parsers.add(new BeaconParser().setBeaconLayout(IBEACON_LAYOUT));
+        parsers.add(new BeaconParser().setBeaconLayout(BeaconParser.EDDYSTONE_UID_LAYOUT));
+        parsers.add(new BeaconParser().setBeaconLayout(BeaconParser.EDDYSTONE_URL_LAYOUT));
+        parsers.add(new BeaconParser().setBeaconLayout(BeaconParser.EDDYSTONE_TLM_LAYOUT));
+        return parsers;
+    }
+
+    private Beacon parseWithEachParser(int index) {
+        for (BeaconParser parser : mParsers) {
+            Beacon beacon = parser.fromScanData(mRecords[index], -60, mDevices[index]);
+            if (beacon != null) {
+                return beacon;
+            }
+        }
+        return null;
+    }
+
+    private int nextIndex() {
+        int index = mNext;
+        mNext = index + 1 == mRecords.length ? 0 : index + 1;
+        return index;
+    }
+
+    /**
+     * Tries each parser in turn, as the scan callback did before the registry
+     */
+    @Benchmark
+    public Beacon fromScanDataEachParser() {
+        return parseWithEachParser(nextIndex());
+    }
+
+    @Benchmark
+    public Beacon fromScanDataRegistry() {
+        int index = nextIndex();
+        return mRegistry.fromScanData(mRecords[index], -60, mDevices[index]);
+    }
+}
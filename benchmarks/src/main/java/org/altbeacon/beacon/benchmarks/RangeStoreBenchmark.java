@@ -0,0 +1,126 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.service.Callback;
+import org.altbeacon.beacon.service.RangeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One ranging cycle of a region with thousands of beacons, in the map of RangedBeacons and in the
+ * dense store enabled by RangeState.setDenseStoreEnabled.  The adds of a cycle and its
+ * finalization are measured separately, each on a fresh range state that has already been
+ * through one cycle, so the beacons are known.  With 10 samples per cycle the dense windows never
+ * fill.  With 100, about a 10 Hz beacon on a default 10 s cycle, they fill and grow during the
+ * measured cycle.  The setup checks that both stores give every beacon the same average.
+ * The allocations the gc profiler reports include those of the per invocation setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangeStoreBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cycle {
+        @Param({"map", "dense"})
+        public String store;
+
+        @Param({"5000"})
+        public int beaconCount;
+
+        @Param({"10", "100"})
+        public int samplesPerCycle;
+
+        Beacon[] beacons;
+        RangeState rangeState;
+
+        @Setup(Level.Trial)
+        public void createBeacons() {
+            beacons = new Beacon[beaconCount];
+            for (int i = 0; i < beaconCount; i++) {
+                beacons[i] = new Beacon.Builder().setId1("2f234454-cf6d-4a0f-adf2-f4911ba9ffa6")
+                        .setId2(String.valueOf(i / 1000 + 1)).setId3(String.valueOf(i % 1000 + 1))
+                        .setRssi(-60).setTxPower(-59)
+                        .setBluetoothAddress(String.format("00:1B:DC:07:%02X:%02X", i / 256, i % 256))
+                        .build();
+            }
+            Map<Beacon, Double> mapAverages = averagesOfTwoCycles(false);
+            Map<Beacon, Double> denseAverages = averagesOfTwoCycles(true);
+            if (!mapAverages.equals(denseAverages)) {
+                throw new IllegalStateException("The dense store averages differ from the map");
+            }
+        }
+
+        private Map<Beacon, Double> averagesOfTwoCycles(boolean dense) {
+            rangeState = newRangeState(dense);
+            addDetections(this);
+            rangeState.finalizeBeacons();
+            addDetections(this);
+            Map<Beacon, Double> averages = new HashMap<Beacon, Double>();
+            for (Beacon beacon : rangeState.finalizeBeacons()) {
+                averages.put(beacon, beacon.getRunningAverageRssi());
+            }
+            return averages;
+        }
+
+        @Setup(Level.Invocation)
+        public void startCycle() {
+            rangeState = newRangeState(store.equals("dense"));
+            addDetections(this);
+            rangeState.finalizeBeacons();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FinalizingCycle extends Cycle {
+        @Setup(Level.Invocation)
+        public void addCycle() {
+            addDetections(this);
+        }
+    }
+
+    static RangeState newRangeState(boolean dense) {
+        RangeState.setDenseStoreEnabled(dense);
+        RangeState rangeState = new RangeState(new Callback(null));
+        RangeState.setDenseStoreEnabled(false);
+        return rangeState;
+    }
+
+    static void addDetections(Cycle cycle) {
+        for (int sample = 0; sample < cycle.samplesPerCycle; sample++) {
+            for (int i = 0; i < cycle.beacons.length; i++) {
+                Beacon beacon = cycle.beacons[i];
+                beacon.setRssi(-60 - (i + sample * 7) % 30);
+                cycle.rangeState.addBeacon(beacon);
+            }
+        }
+    }
+
+    @Benchmark
+    public RangeState add(Cycle cycle) {
+        addDetections(cycle);
+        return cycle.rangeState;
+    }
+
+    @Benchmark
+    public Collection<Beacon> finalizeBeacons(FinalizingCycle cycle) {
+        return cycle.rangeState.finalizeBeacons();
+    }
+}
@@ -0,0 +1,75 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.altbeacon.beacon.RegionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the regions a beacon belongs to, among regions that share one uuid and differ by major,
+ * the way a venue with one region per floor or store is set up.  The linear scan is what the
+ * service did before {@link RegionIndex}.  The beacon matches exactly one region.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionBenchmark {
+    private static final String UUID = "2f234454-cf6d-4a0f-adf2-f4911ba9ffa6";
+
+    @Param({"1", "10", "100", "1000"})
+    public int regionCount;
+
+    private List<Region> mRegions;
+    private RegionIndex mIndex;
+    private Beacon mBeacon;
+    private final List<Region> mMatched = new ArrayList<Region>();
+
+    @Setup
+    public void setUp() {
+        mRegions = new ArrayList<Region>();
+        mIndex = new RegionIndex();
+        for (int i = 0; i < regionCount; i++) {
+            Region region = new Region("region" + i, Identifier.parse(UUID), Identifier.fromInt(i), null);
+            mRegions.add(region);
+            mIndex.add(region);
+        }
+        mBeacon = new Beacon.Builder().setId1(UUID).setId2(String.valueOf(regionCount / 2)).setId3("7")
+                .setRssi(-60).setTxPower(-59).setBluetoothAddress("00:1B:DC:07:00:01").build();
+    }
+
+    @Benchmark
+    public int matchesBeaconScan() {
+        int matches = 0;
+        for (Region region : mRegions) {
+            if (region.matchesBeacon(mBeacon)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int matchingRegionsIndex() {
+        mMatched.clear();
+        mIndex.matchingRegions(mBeacon, mMatched);
+        return mMatched.size();
+    }
+}
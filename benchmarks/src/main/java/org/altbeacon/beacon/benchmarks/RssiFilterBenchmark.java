@@ -0,0 +1,60 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.service.ArmaRssiFilter;
+import org.altbeacon.beacon.service.ResettableRssiFilter;
+import org.altbeacon.beacon.service.RunningAverageRssiFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One ranging cycle of a single beacon: the filter takes the samples of the cycle and then
+ * computes the rssi.  Each operation is a whole cycle, so the result is cycles per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RssiFilterBenchmark {
+    @Param({"runningAverage", "arma"})
+    public String filter;
+
+    // samples per cycle: a beacon at 10 Hz over a 1.1 s cycle, and a fast one over a longer cycle
+    @Param({"10", "100"})
+    public int samples;
+
+    private ResettableRssiFilter mFilter;
+    private Integer[] mRssis;
+
+    @Setup
+    public void setUp() {
+        mFilter = filter.equals("arma") ? new ArmaRssiFilter() : new RunningAverageRssiFilter();
+        Random random = new Random(42);
+        mRssis = new Integer[samples];
+        for (int i = 0; i < samples; i++) {
+            mRssis[i] = -70 + random.nextInt(21);
+        }
+    }
+
+    @Benchmark
+    public double cycle() {
+        mFilter.reset();
+        for (Integer rssi : mRssis) {
+            mFilter.addMeasurement(rssi);
+        }
+        return mFilter.calculateRssi();
+    }
+}
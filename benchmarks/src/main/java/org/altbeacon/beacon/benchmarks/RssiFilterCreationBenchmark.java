@@ -0,0 +1,56 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.service.PooledRssiFilterFactory;
+import org.altbeacon.beacon.service.RssiFilter;
+import org.altbeacon.beacon.service.RunningAverageRssiFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting a filter for a newly ranged beacon.  The reflective lookup is what RangedBeacon did
+ * before {@link PooledRssiFilterFactory}.  The pooled case gives the filter back at once, as when
+ * beacons come and go at the same rate, and the unpooled case only saves the constructor lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RssiFilterCreationBenchmark {
+    private PooledRssiFilterFactory mPooledFactory;
+    private PooledRssiFilterFactory mUnpooledFactory;
+
+    @Setup
+    public void setUp() {
+        mPooledFactory = new PooledRssiFilterFactory(RunningAverageRssiFilter.class);
+        mUnpooledFactory = new PooledRssiFilterFactory(RunningAverageRssiFilter.class, 0);
+    }
+
+    @Benchmark
+    public RssiFilter reflectiveLookup() throws Exception {
+        return (RssiFilter) RunningAverageRssiFilter.class.getConstructors()[0].newInstance();
+    }
+
+    @Benchmark
+    public RssiFilter pooledCreateAndRecycle() {
+        RssiFilter filter = mPooledFactory.create();
+        mPooledFactory.recycle(filter);
+        return filter;
+    }
+
+    @Benchmark
+    public RssiFilter unpooledCreate() {
+        return mUnpooledFactory.create();
+    }
+}
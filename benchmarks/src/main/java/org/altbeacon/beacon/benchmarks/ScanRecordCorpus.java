@@ -0,0 +1,57 @@
+package org.altbeacon.beacon.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The scan records of scan-records.txt, with the kind of advertisement each one is
+ */
+final class ScanRecordCorpus {
+    final List<String> types = new ArrayList<String>();
+    final List<byte[]> records = new ArrayList<byte[]>();
+
+    static ScanRecordCorpus load() {
+        ScanRecordCorpus corpus = new ScanRecordCorpus();
+        InputStream in = ScanRecordCorpus.class.getResourceAsStream("/scan-records.txt");
+        if (in == null) {
+            throw new IllegalStateException("scan-records.txt is missing");
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split("\\s+");
+                    corpus.types.add(fields[0]);
+                    corpus.records.add(hexToBytes(fields[1]));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read scan-records.txt", e);
+        }
+        return corpus;
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
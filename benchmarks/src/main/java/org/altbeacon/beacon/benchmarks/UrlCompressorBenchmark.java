@@ -0,0 +1,49 @@
+package org.altbeacon.beacon.benchmarks;
+
+import org.altbeacon.beacon.utils.UrlBeaconUrlCompressor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eddystone-URL encoding and decoding of a url with a scheme prefix and a top level domain
+ * expansion, so both lookup tables are used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlCompressorBenchmark {
+    private String mUrl = "https://www.altbeacon.org/beacons";
+    private byte[] mCompressed;
+
+    @Setup
+    public void setUp() throws MalformedURLException {
+        mCompressed = UrlBeaconUrlCompressor.compress(mUrl);
+        if (!mUrl.equals(UrlBeaconUrlCompressor.uncompress(mCompressed))) {
+            throw new IllegalStateException("The url does not survive compression");
+        }
+    }
+
+    @Benchmark
+    public byte[] compress() throws MalformedURLException {
+        return UrlBeaconUrlCompressor.compress(mUrl);
+    }
+
+    @Benchmark
+    public String uncompress() {
+        return UrlBeaconUrlCompressor.uncompress(mCompressed);
+    }
+}
@@ -0,0 +1,61 @@
+package org.altbeacon.beacon.service;
+
+/**
+ * Simulates a monitored region through {@link MonitorState#markInside(long)} and
+ * {@link MonitorState#isNewlyOutside(long)} on a simulated clock, with the adaptive exit period
+ * enabled, and prints the exits each scenario causes and the exit period learned at its end.
+ * The region is checked for an exit every second, as by the exit wheel.
+ *
+ * Run with {@code java -cp target/benchmarks.jar org.altbeacon.beacon.service.ExitPeriodSimulation}
+ */
+public class ExitPeriodSimulation {
+    private static final long DURATION_MILLIS = 20 * 60 * 1000l;
+    private static final long CHECK_MILLIS = 1000l;
+
+    public static void main(String[] args) {
+        AdaptiveExitPeriod.setEnabled(true);
+        System.out.println("scenario                                  exits  exits in last 10 min  exit period");
+        run("30 packets/s, no dropouts", 33, 0, 0);
+        run("30 packets/s, 15 s dropout every 3 min", 33, 15000, 180000);
+        run("30 packets/s, 25 s dropout every 3 min", 33, 25000, 180000);
+        run("1 packet/s, 6 s dropout every 3 min", 1000, 6000, 180000);
+        run("1 packet/s, 15 s dropout every 1 min", 1000, 15000, 60000);
+        run("30 packets/s, 90 s dropout every 5 min", 33, 90000, 300000);
+    }
+
+    /**
+     * @param packetMillis time between packets
+     * @param dropoutMillis length of each dropout, or 0 for none
+     * @param dropoutEveryMillis time from the start of one dropout to the start of the next
+     */
+    private static void run(String scenario, long packetMillis, long dropoutMillis, long dropoutEveryMillis) {
+        MonitorState state = new MonitorState(null);
+        long start = 1000000l;
+        long nextPacket = start;
+        long nextCheck = start;
+        int exits = 0;
+        int lateExits = 0;
+        for (long now = start; now < start + DURATION_MILLIS; now++) {
+            if (now == nextPacket) {
+                long elapsed = now - start;
+                // the first dropout starts one period in, so the region has been learned a while
+                boolean dropped = dropoutMillis > 0 && elapsed >= dropoutEveryMillis
+                        && elapsed % dropoutEveryMillis < dropoutMillis;
+                if (!dropped) {
+                    state.markInside(now);
+                }
+                nextPacket += packetMillis;
+            }
+            if (now == nextCheck) {
+                if (state.isNewlyOutside(now)) {
+                    exits++;
+                    if (now - start >= DURATION_MILLIS / 2) {
+                        lateExits++;
+                    }
+                }
+                nextCheck += CHECK_MILLIS;
+            }
+        }
+        System.out.printf("%-41s %6d %21d %9d ms%n", scenario, exits, lateExits, state.getExitPeriod());
+    }
+}
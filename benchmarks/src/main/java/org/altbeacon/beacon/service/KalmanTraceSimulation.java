@@ -0,0 +1,149 @@
+package org.altbeacon.beacon.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Feeds {@link KalmanRssiFilter} synthetic rssi traces on a simulated clock through
+ * {@link KalmanRssiFilter#addMeasurement(int, long)} and compares it with the clipped average of
+ * the last 20 seconds that {@link RunningAverageRssiFilter} calculates.  Samples have 4 dB of
+ * gaussian noise, and one in ten is an 8 dB fade.  Every trace is run with 200 seeds at 1 and 10
+ * samples per second, and the estimates are read once a second.
+ *
+ * step: the rssi is -70 dB for 60 s, then -60 dB.  Prints the time after the step until the
+ * estimate is within 2 dB of -60 and stays there for 10 s, and the rms error from 30 to 60 s.
+ * walk: the rssi is -80 dB for 30 s, rises 1 dB per second for 20 s, then stays at -60 dB.
+ * Prints the rms error from 30 to 60 s.
+ *
+ * Run with {@code java -cp target/benchmarks.jar org.altbeacon.beacon.service.KalmanTraceSimulation}
+ */
+public class KalmanTraceSimulation {
+    private static final int RUNS = 200;
+    private static final long WINDOW_MILLIS = 20000l;
+    private static final int SETTLE_DB = 2;
+    private static final int SETTLE_SECONDS = 10;
+
+    public static void main(String[] args) {
+        System.out.println("rate      step settle kalman / average  steady rms kalman / average  walk rms kalman / average");
+        for (int hz : new int[] {1, 10}) {
+            run(hz);
+        }
+    }
+
+    private static void run(int hz) {
+        long sampleMillis = 1000 / hz;
+        double kalmanSettle = 0, averageSettle = 0;
+        double kalmanSteady = 0, averageSteady = 0;
+        double kalmanWalk = 0, averageWalk = 0;
+        int steadyCount = 0, walkCount = 0;
+        for (int run = 0; run < RUNS; run++) {
+            Random random = new Random(run);
+            KalmanRssiFilter kalman = new KalmanRssiFilter();
+            Window window = new Window();
+            double[] kalmanEstimates = new double[120];
+            double[] averageEstimates = new double[120];
+            for (long t = 0; t < 120000; t += sampleMillis) {
+                double truth = t < 60000 ? -70 : -60;
+                int rssi = sample(random, truth);
+                kalman.addMeasurement(rssi, t);
+                window.add(rssi, t);
+                if (t % 1000 == 0) {
+                    int second = (int) (t / 1000);
+                    kalmanEstimates[second] = kalman.calculateRssi();
+                    averageEstimates[second] = window.clippedAverage(t);
+                    if (t >= 30000 && t < 60000) {
+                        kalmanSteady += square(kalmanEstimates[second] - truth);
+                        averageSteady += square(averageEstimates[second] - truth);
+                        steadyCount++;
+                    }
+                }
+            }
+            kalmanSettle += settleSeconds(kalmanEstimates, -60, 60);
+            averageSettle += settleSeconds(averageEstimates, -60, 60);
+
+            random = new Random(RUNS + run);
+            kalman = new KalmanRssiFilter();
+            window = new Window();
+            for (long t = 0; t < 80000; t += sampleMillis) {
+                double truth = t < 30000 ? -80 : t < 50000 ? -80 + (t - 30000) / 1000.0 : -60;
+                int rssi = sample(random, truth);
+                kalman.addMeasurement(rssi, t);
+                window.add(rssi, t);
+                if (t % 1000 == 0 && t >= 30000 && t < 60000) {
+                    kalmanWalk += square(kalman.calculateRssi() - truth);
+                    averageWalk += square(window.clippedAverage(t) - truth);
+                    walkCount++;
+                }
+            }
+        }
+        System.out.printf("%2d Hz %16.1f s / %4.1f s %17.2f dB / %.2f dB %15.2f dB / %.2f dB%n", hz,
+                kalmanSettle / RUNS, averageSettle / RUNS,
+                Math.sqrt(kalmanSteady / steadyCount), Math.sqrt(averageSteady / steadyCount),
+                Math.sqrt(kalmanWalk / walkCount), Math.sqrt(averageWalk / walkCount));
+    }
+
+    private static int sample(Random random, double truth) {
+        double fade = random.nextInt(10) == 0 ? -8 : 0;
+        return (int) Math.round(truth + random.nextGaussian() * 4 + fade);
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    // seconds from the given one until the estimate settles within SETTLE_DB of the truth
+    private static int settleSeconds(double[] estimates, double truth, int from) {
+        int run = 0;
+        for (int second = from; second < estimates.length; second++) {
+            if (Math.abs(estimates[second] - truth) <= SETTLE_DB) {
+                if (++run >= SETTLE_SECONDS) {
+                    return second - SETTLE_SECONDS + 1 - from;
+                }
+            }
+            else {
+                run = 0;
+            }
+        }
+        return estimates.length - from;
+    }
+
+    // The samples of the last WINDOW_MILLIS, averaged like RunningAverageRssiFilter, which reads the
+    // wall clock and so cannot be run on a simulated one
+    private static class Window {
+        private int[] mRssis = new int[256];
+        private long[] mTimestamps = new long[256];
+        private int mCount;
+
+        void add(int rssi, long timestamp) {
+            if (mCount == mRssis.length) {
+                mRssis = Arrays.copyOf(mRssis, mCount * 2);
+                mTimestamps = Arrays.copyOf(mTimestamps, mCount * 2);
+            }
+            mRssis[mCount] = rssi;
+            mTimestamps[mCount] = timestamp;
+            mCount++;
+        }
+
+        double clippedAverage(long now) {
+            int[] values = new int[mCount];
+            int size = 0;
+            for (int i = 0; i < mCount; i++) {
+                if (now - mTimestamps[i] < WINDOW_MILLIS) {
+                    values[size++] = mRssis[i];
+                }
+            }
+            Arrays.sort(values, 0, size);
+            int startIndex = 0;
+            int endIndex = size - 1;
+            if (size > 2) {
+                startIndex = size / 10 + 1;
+                endIndex = size - size / 10 - 2;
+            }
+            double sum = 0;
+            for (int i = startIndex; i <= endIndex; i++) {
+                sum += values[i];
+            }
+            return sum / (endIndex - startIndex + 1);
+        }
+    }
+}
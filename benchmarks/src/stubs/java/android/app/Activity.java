@@ -0,0 +1,16 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.app;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+
+public class Activity extends ContextWrapper {
+    public Activity() {
+        super(null);
+    }
+
+    public void startActivityForResult(Intent intent, int requestCode) {
+    }
+}
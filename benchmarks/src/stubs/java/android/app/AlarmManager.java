@@ -0,0 +1,14 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.app;
+
+public class AlarmManager {
+    public static final int RTC_WAKEUP = 0;
+
+    public void set(int type, long triggerAtMillis, PendingIntent operation) {
+    }
+
+    public void cancel(PendingIntent operation) {
+    }
+}
@@ -0,0 +1,26 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.app;
+
+import android.content.ContextWrapper;
+import android.os.Bundle;
+
+public class Application extends ContextWrapper {
+    public Application() {
+        super(null);
+    }
+
+    public void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+    }
+
+    public interface ActivityLifecycleCallbacks {
+        void onActivityCreated(Activity activity, Bundle savedInstanceState);
+        void onActivityStarted(Activity activity);
+        void onActivityResumed(Activity activity);
+        void onActivityPaused(Activity activity);
+        void onActivityStopped(Activity activity);
+        void onActivitySaveInstanceState(Activity activity, Bundle outState);
+        void onActivityDestroyed(Activity activity);
+    }
+}
@@ -0,0 +1,19 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.app;
+
+import android.content.Intent;
+import android.os.IBinder;
+
+public abstract class IntentService extends Service {
+    public IntentService(String name) {
+    }
+
+    protected abstract void onHandleIntent(Intent intent);
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
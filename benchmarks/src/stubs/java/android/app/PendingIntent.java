@@ -0,0 +1,15 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+public final class PendingIntent {
+    public static final int FLAG_UPDATE_CURRENT = 0;
+
+    public static PendingIntent getBroadcast(Context context, int requestCode, Intent intent, int flags) {
+        return null;
+    }
+}
@@ -0,0 +1,30 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.app;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.os.IBinder;
+
+public abstract class Service extends ContextWrapper {
+    public Service() {
+        super(null);
+    }
+
+    public abstract IBinder onBind(Intent intent);
+
+    public boolean onUnbind(Intent intent) {
+        return false;
+    }
+
+    public void onCreate() {
+    }
+
+    public void onDestroy() {
+    }
+
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return 0;
+    }
+}
@@ -0,0 +1,74 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth;
+
+import android.bluetooth.le.BluetoothLeAdvertiser;
+import android.bluetooth.le.BluetoothLeScanner;
+
+public final class BluetoothAdapter {
+    public static final String ACTION_DISCOVERY_STARTED = "android.bluetooth.adapter.action.DISCOVERY_STARTED";
+    public static final String ACTION_DISCOVERY_FINISHED = "android.bluetooth.adapter.action.DISCOVERY_FINISHED";
+    public static final String ACTION_STATE_CHANGED = "android.bluetooth.adapter.action.STATE_CHANGED";
+    public static final String EXTRA_STATE = "android.bluetooth.adapter.extra.STATE";
+    public static final int ERROR = Integer.MIN_VALUE;
+    public static final int STATE_OFF = 10;
+    public static final int STATE_TURNING_ON = 11;
+    public static final int STATE_ON = 12;
+    public static final int STATE_TURNING_OFF = 13;
+
+    public static BluetoothAdapter getDefaultAdapter() {
+        return null;
+    }
+
+    public boolean isEnabled() {
+        return false;
+    }
+
+    public boolean enable() {
+        return false;
+    }
+
+    public boolean disable() {
+        return false;
+    }
+
+    public int getState() {
+        return STATE_OFF;
+    }
+
+    public boolean startDiscovery() {
+        return false;
+    }
+
+    public boolean cancelDiscovery() {
+        return false;
+    }
+
+    public boolean isDiscovering() {
+        return false;
+    }
+
+    public boolean startLeScan(LeScanCallback callback) {
+        return false;
+    }
+
+    public void stopLeScan(LeScanCallback callback) {
+    }
+
+    public BluetoothLeScanner getBluetoothLeScanner() {
+        return null;
+    }
+
+    public BluetoothLeAdvertiser getBluetoothLeAdvertiser() {
+        return null;
+    }
+
+    public boolean isMultipleAdvertisementSupported() {
+        return false;
+    }
+
+    public interface LeScanCallback {
+        void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord);
+    }
+}
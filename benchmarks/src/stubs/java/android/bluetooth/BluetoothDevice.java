@@ -0,0 +1,23 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth;
+
+public final class BluetoothDevice {
+    private final String mAddress;
+
+    /**
+     * Not part of the Android API, which only hands out devices.  Lets benchmarks make them.
+     */
+    public BluetoothDevice(String address) {
+        mAddress = address;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public String getName() {
+        return null;
+    }
+}
@@ -0,0 +1,18 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+public abstract class AdvertiseCallback {
+    public static final int ADVERTISE_FAILED_DATA_TOO_LARGE = 1;
+    public static final int ADVERTISE_FAILED_TOO_MANY_ADVERTISERS = 2;
+    public static final int ADVERTISE_FAILED_ALREADY_STARTED = 3;
+    public static final int ADVERTISE_FAILED_INTERNAL_ERROR = 4;
+    public static final int ADVERTISE_FAILED_FEATURE_UNSUPPORTED = 5;
+
+    public void onStartSuccess(AdvertiseSettings settingsInEffect) {
+    }
+
+    public void onStartFailure(int errorCode) {
+    }
+}
@@ -0,0 +1,26 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+import android.os.ParcelUuid;
+
+public final class AdvertiseData {
+    public static final class Builder {
+        public Builder addManufacturerData(int manufacturerId, byte[] manufacturerSpecificData) {
+            return this;
+        }
+
+        public Builder addServiceUuid(ParcelUuid serviceUuid) {
+            return this;
+        }
+
+        public Builder addServiceData(ParcelUuid serviceDataUuid, byte[] serviceData) {
+            return this;
+        }
+
+        public AdvertiseData build() {
+            return new AdvertiseData();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+public final class AdvertiseSettings {
+    public static final int ADVERTISE_MODE_LOW_POWER = 0;
+    public static final int ADVERTISE_MODE_BALANCED = 1;
+    public static final int ADVERTISE_MODE_LOW_LATENCY = 2;
+    public static final int ADVERTISE_TX_POWER_ULTRA_LOW = 0;
+    public static final int ADVERTISE_TX_POWER_LOW = 1;
+    public static final int ADVERTISE_TX_POWER_MEDIUM = 2;
+    public static final int ADVERTISE_TX_POWER_HIGH = 3;
+
+    public static final class Builder {
+        public Builder setAdvertiseMode(int advertiseMode) {
+            return this;
+        }
+
+        public Builder setTxPowerLevel(int txPowerLevel) {
+            return this;
+        }
+
+        public Builder setConnectable(boolean connectable) {
+            return this;
+        }
+
+        public AdvertiseSettings build() {
+            return new AdvertiseSettings();
+        }
+    }
+}
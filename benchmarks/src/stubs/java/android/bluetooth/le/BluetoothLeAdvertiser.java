@@ -0,0 +1,12 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+public final class BluetoothLeAdvertiser {
+    public void startAdvertising(AdvertiseSettings settings, AdvertiseData advertiseData, AdvertiseCallback callback) {
+    }
+
+    public void stopAdvertising(AdvertiseCallback callback) {
+    }
+}
@@ -0,0 +1,17 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+import java.util.List;
+
+public final class BluetoothLeScanner {
+    public void startScan(List<ScanFilter> filters, ScanSettings settings, ScanCallback callback) {
+    }
+
+    public void stopScan(ScanCallback callback) {
+    }
+
+    public void flushPendingScanResults(ScanCallback callback) {
+    }
+}
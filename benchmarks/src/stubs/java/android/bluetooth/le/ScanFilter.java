@@ -0,0 +1,30 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+import android.os.ParcelUuid;
+
+public final class ScanFilter {
+    public static final class Builder {
+        public Builder setServiceUuid(ParcelUuid serviceUuid) {
+            return this;
+        }
+
+        public Builder setServiceUuid(ParcelUuid serviceUuid, ParcelUuid uuidMask) {
+            return this;
+        }
+
+        public Builder setManufacturerData(int manufacturerId, byte[] manufacturerData, byte[] manufacturerDataMask) {
+            return this;
+        }
+
+        public Builder setServiceData(ParcelUuid serviceDataUuid, byte[] serviceData, byte[] serviceDataMask) {
+            return this;
+        }
+
+        public ScanFilter build() {
+            return new ScanFilter();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+import android.os.ParcelUuid;
+
+import java.util.List;
+
+public final class ScanRecord {
+    public byte[] getBytes() {
+        return null;
+    }
+
+    public List<ParcelUuid> getServiceUuids() {
+        return null;
+    }
+}
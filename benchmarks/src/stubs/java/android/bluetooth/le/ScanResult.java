@@ -0,0 +1,24 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+import android.bluetooth.BluetoothDevice;
+
+public final class ScanResult {
+    public BluetoothDevice getDevice() {
+        return null;
+    }
+
+    public int getRssi() {
+        return 0;
+    }
+
+    public ScanRecord getScanRecord() {
+        return null;
+    }
+
+    public long getTimestampNanos() {
+        return 0;
+    }
+}
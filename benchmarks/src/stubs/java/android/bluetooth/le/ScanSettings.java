@@ -0,0 +1,23 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.bluetooth.le;
+
+public final class ScanSettings {
+    public static final int SCAN_MODE_LOW_POWER = 0;
+    public static final int SCAN_MODE_LOW_LATENCY = 2;
+
+    public static final class Builder {
+        public Builder setScanMode(int scanMode) {
+            return this;
+        }
+
+        public Builder setReportDelay(long reportDelayMillis) {
+            return this;
+        }
+
+        public ScanSettings build() {
+            return new ScanSettings();
+        }
+    }
+}
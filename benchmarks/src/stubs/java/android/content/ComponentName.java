@@ -0,0 +1,12 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content;
+
+public final class ComponentName {
+    public ComponentName(String packageName, String className) {
+    }
+
+    public ComponentName(Context packageContext, Class<?> cls) {
+    }
+}
@@ -0,0 +1,85 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+public abstract class Context {
+    public static final String BLUETOOTH_SERVICE = "bluetooth";
+    public static final String ALARM_SERVICE = "alarm";
+    public static final int MODE_PRIVATE = 0;
+    public static final int BIND_AUTO_CREATE = 1;
+
+    public Object getSystemService(String name) {
+        return null;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public String getPackageName() {
+        return null;
+    }
+
+    public PackageManager getPackageManager() {
+        return null;
+    }
+
+    public ApplicationInfo getApplicationInfo() {
+        return null;
+    }
+
+    public ContentResolver getContentResolver() {
+        return null;
+    }
+
+    public AssetManager getAssets() {
+        return null;
+    }
+
+    public File getFilesDir() {
+        return null;
+    }
+
+    public ComponentName startService(Intent service) {
+        return null;
+    }
+
+    public boolean bindService(Intent service, ServiceConnection connection, int flags) {
+        return false;
+    }
+
+    public void unbindService(ServiceConnection connection) {
+    }
+
+    public void sendBroadcast(Intent intent) {
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return null;
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+
+    public int checkCallingOrSelfPermission(String permission) {
+        return PackageManager.PERMISSION_DENIED;
+    }
+
+    public FileInputStream openFileInput(String name) throws FileNotFoundException {
+        throw new FileNotFoundException(name);
+    }
+
+    public FileOutputStream openFileOutput(String name, int mode) throws FileNotFoundException {
+        throw new FileNotFoundException(name);
+    }
+}
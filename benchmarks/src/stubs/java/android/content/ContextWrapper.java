@@ -0,0 +1,9 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content;
+
+public class ContextWrapper extends Context {
+    public ContextWrapper(Context base) {
+    }
+}
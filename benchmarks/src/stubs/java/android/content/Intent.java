@@ -0,0 +1,78 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+public class Intent {
+    public Intent() {
+    }
+
+    public Intent(String action) {
+    }
+
+    public Intent(Context packageContext, Class<?> cls) {
+    }
+
+    public Intent setComponent(ComponentName component) {
+        return this;
+    }
+
+    public ComponentName getComponent() {
+        return null;
+    }
+
+    public Intent setClassName(Context packageContext, String className) {
+        return this;
+    }
+
+    public Intent setAction(String action) {
+        return this;
+    }
+
+    public String getAction() {
+        return null;
+    }
+
+    public Intent addFlags(int flags) {
+        return this;
+    }
+
+    public Intent putExtra(String name, Parcelable value) {
+        return this;
+    }
+
+    public Intent putExtra(String name, String value) {
+        return this;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        return this;
+    }
+
+    public Bundle getExtras() {
+        return null;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        return defaultValue;
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        return defaultValue;
+    }
+
+    public String getStringExtra(String name) {
+        return null;
+    }
+
+    public <T extends Parcelable> T getParcelableExtra(String name) {
+        return null;
+    }
+}
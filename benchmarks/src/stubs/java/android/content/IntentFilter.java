@@ -0,0 +1,15 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content;
+
+public class IntentFilter {
+    public IntentFilter() {
+    }
+
+    public IntentFilter(String action) {
+    }
+
+    public void addAction(String action) {
+    }
+}
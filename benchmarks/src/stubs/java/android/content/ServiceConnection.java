@@ -0,0 +1,11 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content;
+
+import android.os.IBinder;
+
+public interface ServiceConnection {
+    void onServiceConnected(ComponentName name, IBinder service);
+    void onServiceDisconnected(ComponentName name);
+}
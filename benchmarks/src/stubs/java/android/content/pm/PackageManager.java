@@ -0,0 +1,34 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.content.pm;
+
+import android.content.Intent;
+
+import java.util.List;
+
+public abstract class PackageManager {
+    public static final String FEATURE_BLUETOOTH_LE = "android.hardware.bluetooth_le";
+    public static final int PERMISSION_GRANTED = 0;
+    public static final int PERMISSION_DENIED = -1;
+    public static final int MATCH_DEFAULT_ONLY = 0x10000;
+
+    public boolean hasSystemFeature(String name) {
+        return false;
+    }
+
+    public List<Object> queryIntentServices(Intent intent, int flags) {
+        return null;
+    }
+
+    public int checkPermission(String permissionName, String packageName) {
+        return PERMISSION_DENIED;
+    }
+
+    public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+        throw new NameNotFoundException();
+    }
+
+    public static class NameNotFoundException extends Exception {
+    }
+}
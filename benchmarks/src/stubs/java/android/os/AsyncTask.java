@@ -0,0 +1,29 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+import java.util.concurrent.Executor;
+
+public abstract class AsyncTask<Params, Progress, Result> {
+    public static final Executor THREAD_POOL_EXECUTOR = null;
+
+    protected abstract Result doInBackground(Params... params);
+
+    protected void onPreExecute() {
+    }
+
+    protected void onPostExecute(Result result) {
+    }
+
+    protected void onProgressUpdate(Progress... values) {
+    }
+
+    public final AsyncTask<Params, Progress, Result> execute(Params... params) {
+        return this;
+    }
+
+    public final AsyncTask<Params, Progress, Result> executeOnExecutor(Executor executor, Params... params) {
+        return this;
+    }
+}
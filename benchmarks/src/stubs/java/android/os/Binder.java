@@ -0,0 +1,10 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+public class Binder implements IBinder {
+    public static int getCallingPid() {
+        return 0;
+    }
+}
@@ -0,0 +1,30 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+public class Build {
+    public static final String MODEL = "";
+    public static final String MANUFACTURER = "";
+    public static final String DEVICE = "";
+    public static final String BRAND = "";
+    public static final String PRODUCT = "";
+    public static final String DISPLAY = "";
+    public static final String ID = "";
+    public static final String FINGERPRINT = "";
+
+    public static class VERSION {
+        // the newest release the library knows of, so no legacy path is taken
+        public static final int SDK_INT = 21;
+        public static final String RELEASE = "";
+        public static final String INCREMENTAL = "";
+    }
+
+    public static class VERSION_CODES {
+        public static final int CUPCAKE = 3;
+        public static final int GINGERBREAD = 9;
+        public static final int HONEYCOMB = 11;
+        public static final int JELLY_BEAN_MR2 = 18;
+        public static final int LOLLIPOP = 21;
+    }
+}
@@ -0,0 +1,33 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+public class Handler {
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public void handleMessage(Message message) {
+    }
+
+    public boolean post(Runnable runnable) {
+        return false;
+    }
+
+    public boolean postDelayed(Runnable runnable, long delayMillis) {
+        return false;
+    }
+
+    public void removeCallbacks(Runnable runnable) {
+    }
+
+    public void removeCallbacksAndMessages(Object token) {
+    }
+
+    public final Looper getLooper() {
+        return null;
+    }
+}
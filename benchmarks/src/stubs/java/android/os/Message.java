@@ -0,0 +1,19 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+public final class Message {
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+
+    public static Message obtain(Handler handler, int what, int arg1, int arg2) {
+        Message message = new Message();
+        message.what = what;
+        message.arg1 = arg1;
+        message.arg2 = arg2;
+        return message;
+    }
+}
@@ -0,0 +1,19 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+public final class Messenger {
+    public Messenger(Handler target) {
+    }
+
+    public Messenger(IBinder target) {
+    }
+
+    public IBinder getBinder() {
+        return null;
+    }
+
+    public void send(Message message) throws RemoteException {
+    }
+}
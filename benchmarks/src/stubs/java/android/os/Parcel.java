@@ -0,0 +1,133 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Stand-in for the Android class so the library builds on a plain JVM.  Unlike the other stubs
+ * this one works: written values are kept in a list and read back in order, so parceling can be
+ * measured on the JVM.  dataSize() estimates the Android wire size, but the costs of writing and
+ * reading are not those of Android and only compare encodings with each other.
+ */
+public final class Parcel {
+    private final ArrayList<Object> mValues = new ArrayList<Object>();
+    private int mPosition;
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        mValues.clear();
+        mPosition = 0;
+    }
+
+    public int dataSize() {
+        int size = 0;
+        for (Object value : mValues) {
+            size += value instanceof byte[] ? 4 + ((((byte[]) value).length + 3) & ~3)
+                    : value instanceof String ? 4 + ((((String) value).length() * 2 + 2 + 3) & ~3)
+                    : value instanceof Long || value instanceof Double ? 8 : 4;
+        }
+        return size;
+    }
+
+    public void setDataPosition(int position) {
+        mPosition = position;
+    }
+
+    private Object next() {
+        return mValues.get(mPosition++);
+    }
+
+    public void writeInt(int value) {
+        mValues.add(value);
+    }
+
+    public int readInt() {
+        return (Integer) next();
+    }
+
+    public void writeLong(long value) {
+        mValues.add(value);
+    }
+
+    public long readLong() {
+        return (Long) next();
+    }
+
+    public void writeDouble(double value) {
+        mValues.add(value);
+    }
+
+    public double readDouble() {
+        return (Double) next();
+    }
+
+    public void writeString(String value) {
+        mValues.add(value);
+    }
+
+    public String readString() {
+        return (String) next();
+    }
+
+    public void writeByte(byte value) {
+        mValues.add((int) value);
+    }
+
+    public byte readByte() {
+        return (byte) (int) (Integer) next();
+    }
+
+    public void writeByteArray(byte[] value) {
+        mValues.add(value == null ? null : value.clone());
+    }
+
+    public void writeByteArray(byte[] value, int offset, int length) {
+        mValues.add(Arrays.copyOfRange(value, offset, offset + length));
+    }
+
+    public byte[] createByteArray() {
+        return (byte[]) next();
+    }
+
+    public void readByteArray(byte[] value) {
+        byte[] stored = (byte[]) next();
+        System.arraycopy(stored, 0, value, 0, value.length);
+    }
+
+    public void writeParcelable(Parcelable value, int flags) {
+        mValues.add(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T readParcelable(ClassLoader loader) {
+        return (T) next();
+    }
+
+    public void writeParcelableArray(Parcelable[] value, int flags) {
+        mValues.add(value);
+    }
+
+    public Parcelable[] readParcelableArray(ClassLoader loader) {
+        return (Parcelable[]) next();
+    }
+
+    public void writeTypedArray(Parcelable[] value, int flags) {
+        mValues.add(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] createTypedArray(Parcelable.Creator<T> creator) {
+        return (T[]) next();
+    }
+
+    public void writeIntArray(int[] value) {
+        mValues.add(value == null ? null : value.clone());
+    }
+
+    public int[] createIntArray() {
+        return (int[]) next();
+    }
+}
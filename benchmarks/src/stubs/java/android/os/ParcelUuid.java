@@ -0,0 +1,22 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+import java.util.UUID;
+
+public final class ParcelUuid {
+    private final UUID mUuid;
+
+    public ParcelUuid(UUID uuid) {
+        mUuid = uuid;
+    }
+
+    public UUID getUuid() {
+        return mUuid;
+    }
+
+    public static ParcelUuid fromString(String uuid) {
+        return new ParcelUuid(UUID.fromString(uuid));
+    }
+}
@@ -0,0 +1,16 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.os;
+
+public interface Parcelable {
+    int describeContents();
+
+    void writeToParcel(Parcel out, int flags);
+
+    interface Creator<T> {
+        T createFromParcel(Parcel in);
+
+        T[] newArray(int size);
+    }
+}
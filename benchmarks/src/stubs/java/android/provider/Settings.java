@@ -0,0 +1,16 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.provider;
+
+import android.content.ContentResolver;
+
+public final class Settings {
+    public static final class Secure {
+        public static final String ANDROID_ID = "android_id";
+
+        public static String getString(ContentResolver resolver, String name) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Compile-time stand-in for the Android class of the same name, so the library builds on a
+// plain JVM.  Only what the library uses is declared, and nothing here does any work.
+
+package android.util;
+
+public final class Log {
+    public static int v(String tag, String message) {
+        return 0;
+    }
+
+    public static int v(String tag, String message, Throwable t) {
+        return 0;
+    }
+
+    public static int d(String tag, String message) {
+        return 0;
+    }
+
+    public static int d(String tag, String message, Throwable t) {
+        return 0;
+    }
+
+    public static int i(String tag, String message) {
+        return 0;
+    }
+
+    public static int i(String tag, String message, Throwable t) {
+        return 0;
+    }
+
+    public static int w(String tag, String message) {
+        return 0;
+    }
+
+    public static int w(String tag, String message, Throwable t) {
+        return 0;
+    }
+
+    public static int e(String tag, String message) {
+        return 0;
+    }
+
+    public static int e(String tag, String message, Throwable t) {
+        return 0;
+    }
+}
@@ -23,9 +23,7 @@
  */
 package org.altbeacon.beacon;
 
-import android.annotation.TargetApi;
 import android.bluetooth.BluetoothDevice;
-import android.util.Log;
 
 /**
  * A specific beacon parser designed to parse only AltBeacons from raw BLE packets detected by
@@ -54,18 +52,16 @@ public class AltBeaconParser extends BeaconParser {
         this.setBeaconLayout(BeaconParser.ALTBEACON_LAYOUT);
     }
     /**
-     * Construct an AltBeacon from a Bluetooth LE packet collected by Android's Bluetooth APIs,
-     * including the raw Bluetooth device info
+     * Construct an AltBeacon from a buffer filled by {@link #decode(byte[], DecodeBuffer)}
      *
-     * @param scanData The actual packet bytes
+     * @param decoded a buffer holding a matched packet
      * @param rssi The measured signal strength of the packet
      * @param device The Bluetooth device that was detected
      * @return An instance of an <code>Beacon</code>
      */
-    @TargetApi(5)
     @Override
-    public Beacon fromScanData(byte[] scanData, int rssi, BluetoothDevice device) {
-        return fromScanData(scanData, rssi, device, new AltBeacon());
+    public Beacon fromDecodeBuffer(DecodeBuffer decoded, int rssi, BluetoothDevice device) {
+        return populateBeacon(decoded, rssi, device, new AltBeacon());
     }
 
 }
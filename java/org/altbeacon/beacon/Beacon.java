@@ -28,12 +28,15 @@ import android.os.Parcelable;
 
 import org.altbeacon.beacon.client.BeaconDataFactory;
 import org.altbeacon.beacon.client.NullBeaconDataFactory;
+import org.altbeacon.beacon.distance.BatchDistanceCalculator;
 import org.altbeacon.beacon.distance.DistanceCalculator;
 import org.altbeacon.beacon.logging.LogManager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The <code>Beacon</code> class represents a single hardware Beacon detected by
@@ -150,6 +153,12 @@ public class Beacon implements Parcelable {
      */
     protected String mBluetoothName;
 
+    /**
+     * Identity fingerprint used by hashCode and equals.  Computed at parse time, or lazily for
+     * beacons built any other way, and recomputed if the identifiers or address are replaced.
+     */
+    private volatile Fingerprint mFingerprint;
+
     /**
      * Required for making object Parcelable.  If you override this class, you must provide an
      * equivalent version of this method.
@@ -196,34 +205,8 @@ public class Beacon implements Parcelable {
      * @param in parcel
      */
     protected Beacon(Parcel in) {
-        int size = in.readInt();
-
-        this.mIdentifiers = new ArrayList<Identifier>(size);
-        for (int i = 0; i < size; i++) {
-            mIdentifiers.add(Identifier.parse(in.readString()));
-        }
-        mRunningAverageRssi = in.readDouble(); //djt
-        mDistance = in.readDouble();
-        mRssi = in.readInt();
-        mTxPower = in.readInt();
-        mBluetoothAddress = in.readString();
-        mBeaconTypeCode = in.readInt();
-        mServiceUuid = in.readInt();
-        int dataSize = in.readInt();
-        this.mDataFields = new ArrayList<Long>(dataSize);
-        for (int i = 0; i < dataSize; i++) {
-            mDataFields.add(in.readLong());
-        }
-        int extraDataSize = in.readInt();
-        if (LogManager.isVerboseLoggingEnabled()) {
-            LogManager.d(TAG, "reading "+extraDataSize+" extra data fields from parcel");
-        }
-        this.mExtraDataFields = new ArrayList<Long>(extraDataSize);
-        for (int i = 0; i < extraDataSize; i++) {
-            mExtraDataFields.add(in.readLong());
-        }
-        mManufacturer = in.readInt();
-        mBluetoothName = in.readString();
+        this();
+        CompactParcel.decodeBeacon(in.createByteArray(), this);
     }
 
     /**
@@ -243,6 +226,7 @@ public class Beacon implements Parcelable {
         this.mBeaconTypeCode = otherBeacon.getBeaconTypeCode();
         this.mServiceUuid = otherBeacon.getServiceUuid();
         this.mBluetoothName = otherBeacon.mBluetoothName;
+        this.mManufacturer = otherBeacon.mManufacturer;
     }
 
     /**
@@ -441,11 +425,12 @@ public class Beacon implements Parcelable {
      */
     @Override
     public int hashCode() {
-        StringBuilder sb = toStringBuilder();
+        Fingerprint fingerprint = fingerprint();
+        long hash = fingerprint.identity;
         if (sHardwareEqualityEnforced) {
-            sb.append(mBluetoothAddress);
+            hash = hash * 0x9e3779b97f4a7c15l ^ fingerprint.bluetoothAddress;
         }
-        return sb.toString().hashCode();
+        return (int) (hash ^ (hash >>> 32));
     }
 
     /**
@@ -453,10 +438,23 @@ public class Beacon implements Parcelable {
      */
     @Override
     public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
         if (!(that instanceof Beacon)) {
             return false;
         }
         Beacon thatBeacon = (Beacon) that;
+        // Different fingerprints always mean different beacons.  Equal ones may still collide, so
+        // they are confirmed with a full compare below.
+        Fingerprint fingerprint = fingerprint();
+        Fingerprint thatFingerprint = thatBeacon.fingerprint();
+        if (fingerprint.identity != thatFingerprint.identity) {
+            return false;
+        }
+        if (sHardwareEqualityEnforced && fingerprint.bluetoothAddress != thatFingerprint.bluetoothAddress) {
+            return false;
+        }
         if (!this.mIdentifiers.equals(thatBeacon.mIdentifiers)) {
             return false;
         }
@@ -465,6 +463,88 @@ public class Beacon implements Parcelable {
                 true;
     }
 
+    /**
+     * Returns a 64 bit fingerprint of the identifiers, computed from their raw bytes.  Beacons with
+     * equal identifiers always have the same fingerprint.  Different identifiers almost always
+     * have different fingerprints, but this is not guaranteed.
+     * @return the identity fingerprint
+     */
+    public long getIdentityFingerprint() {
+        return fingerprint().identity;
+    }
+
+    /**
+     * Returns the fingerprint, computing it if the identifiers or the Bluetooth address have been
+     * replaced since it was last computed.
+     */
+    Fingerprint fingerprint() {
+        Fingerprint fingerprint = mFingerprint;
+        if (fingerprint == null || !fingerprint.isFor(mIdentifiers, mBluetoothAddress)) {
+            fingerprint = new Fingerprint(mIdentifiers, mBluetoothAddress);
+            mFingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Immutable, so it can be published to other threads without locking
+     */
+    static final class Fingerprint {
+        private static final long NULL_IDENTIFIER = 0x5bd1e9955bd1e995l;
+
+        private final List<Identifier> mIdentifiers;
+        private final int mIdentifierCount;
+        private final String mBluetoothAddressString;
+        final long identity;
+        final long bluetoothAddress;
+
+        Fingerprint(List<Identifier> identifiers, String bluetoothAddress) {
+            mIdentifiers = identifiers;
+            mIdentifierCount = identifiers.size();
+            mBluetoothAddressString = bluetoothAddress;
+            long hash = 0xcbf29ce484222325l;
+            for (Identifier identifier : identifiers) {
+                hash = (hash ^ (identifier == null ? NULL_IDENTIFIER : identifier.fingerprint())) * 0x100000001b3l;
+                hash = Long.rotateLeft(hash, 29);
+            }
+            identity = Identifier.mix(hash ^ mIdentifierCount);
+            this.bluetoothAddress = macToLong(bluetoothAddress);
+        }
+
+        boolean isFor(List<Identifier> identifiers, String bluetoothAddress) {
+            return mIdentifiers == identifiers && mIdentifierCount == identifiers.size()
+                    && mBluetoothAddressString == bluetoothAddress;
+        }
+
+        /**
+         * Packs a mac address like 00:11:22:33:44:55 into the low 48 bits.  Anything else gets a
+         * string hash with the top bit set, so it cannot equal a packed address.
+         */
+        static long macToLong(String address) {
+            if (address == null) {
+                return 0l;
+            }
+            long value = 0l;
+            int digits = 0;
+            for (int i = 0; i < address.length(); i++) {
+                char c = address.charAt(i);
+                int digit = Character.digit(c, 16);
+                if (digit >= 0 && digits < 12) {
+                    value = (value << 4) | digit;
+                    digits++;
+                }
+                else if (c != ':' && c != '-') {
+                    digits = -1;
+                    break;
+                }
+            }
+            if (digits != 12) {
+                return Long.MIN_VALUE | address.hashCode();
+            }
+            return value;
+        }
+    }
+
     /**
      * Requests server-side data for this beacon.  Requires that a BeaconDataFactory be set up with
      * a backend service.
@@ -511,32 +591,71 @@ public class Beacon implements Parcelable {
      * method if you add any additional fields.
      */
     public void writeToParcel(Parcel out, int flags) {
-        out.writeInt(mIdentifiers.size());
-        LogManager.d(TAG, "serializing identifiers of size %s", mIdentifiers.size());
-        for (Identifier identifier: mIdentifiers) {
-            out.writeString(identifier == null ? null : identifier.toString());
+        out.writeByteArray(CompactParcel.encodeBeacon(this));
+    }
+
+    /**
+     * Writes the fields of this beacon in the compact parcel format
+     * @param dictionary indexes of shared identifiers, or null to write identifiers in full
+     */
+    void writeCompact(CompactParcel.Output out, Map<Identifier, Integer> dictionary) {
+        out.writeVarint(mIdentifiers.size());
+        for (Identifier identifier : mIdentifiers) {
+            out.writeIdentifier(identifier, dictionary);
+        }
+        out.writeByte(mRunningAverageRssi == null ? 0 : 1);
+        if (mRunningAverageRssi != null) {
+            out.writeDouble(mRunningAverageRssi);
         }
-        out.writeDouble(mRunningAverageRssi); // djt
         out.writeDouble(getDistance());
-        out.writeInt(mRssi);
-        out.writeInt(mTxPower);
-        out.writeString(mBluetoothAddress);
-        out.writeInt(mBeaconTypeCode);
-        out.writeInt(mServiceUuid);
-        out.writeInt(mDataFields.size());
-        for (Long dataField: mDataFields) {
-            out.writeLong(dataField);
+        out.writeSignedVarint(mRssi);
+        out.writeSignedVarint(mTxPower);
+        out.writeAddress(mBluetoothAddress);
+        out.writeSignedVarint(mBeaconTypeCode);
+        out.writeSignedVarint(mServiceUuid);
+        out.writeVarint(mDataFields.size());
+        for (Long dataField : mDataFields) {
+            out.writeSignedVarint(dataField);
+        }
+        out.writeVarint(mExtraDataFields.size());
+        for (Long dataField : mExtraDataFields) {
+            out.writeSignedVarint(dataField);
+        }
+        out.writeSignedVarint(mManufacturer);
+        out.writeString(mBluetoothName);
+    }
+
+    /**
+     * Reads fields written by {@link #writeCompact(CompactParcel.Output, Map)}
+     */
+    void readCompact(CompactParcel.Input in, List<Identifier> dictionary) {
+        int size = in.readCount();
+        mIdentifiers = new ArrayList<Identifier>(size);
+        for (int i = 0; i < size; i++) {
+            mIdentifiers.add(in.readIdentifier(dictionary));
+        }
+        mRunningAverageRssi = in.readByte() != 0 ? in.readDouble() : null;
+        mDistance = in.readDouble();
+        mRssi = (int) in.readSignedVarint();
+        mTxPower = (int) in.readSignedVarint();
+        mBluetoothAddress = in.readAddress();
+        mBeaconTypeCode = (int) in.readSignedVarint();
+        mServiceUuid = (int) in.readSignedVarint();
+        int dataSize = in.readCount();
+        mDataFields = new ArrayList<Long>(dataSize);
+        for (int i = 0; i < dataSize; i++) {
+            mDataFields.add(in.readSignedVarint());
         }
+        int extraDataSize = in.readCount();
         if (LogManager.isVerboseLoggingEnabled()) {
-            LogManager.d(TAG, "writing "+mExtraDataFields.size()+" extra data fields to parcel");
+            LogManager.d(TAG, "reading "+extraDataSize+" extra data fields from parcel");
         }
-        out.writeInt(mExtraDataFields.size());
-        for (Long dataField: mExtraDataFields) {
-            out.writeLong(dataField);
+        mExtraDataFields = new ArrayList<Long>(extraDataSize);
+        for (int i = 0; i < extraDataSize; i++) {
+            mExtraDataFields.add(in.readSignedVarint());
         }
-        out.writeInt(mManufacturer);
-        out.writeString(mBluetoothName);
-
+        mManufacturer = (int) in.readSignedVarint();
+        mBluetoothName = in.readString();
     }
 
     /**
@@ -567,6 +686,39 @@ public class Beacon implements Parcelable {
         }
     }
 
+    /**
+     * Calculates the distances of several beacons in one call when the DistanceCalculator is a
+     * BatchDistanceCalculator.  Otherwise the distances are left to {@link #getDistance()}.
+     * Beacons whose distance is already known are skipped.
+     * @param beacons
+     */
+    public static void calculateDistances(Collection<Beacon> beacons) {
+        DistanceCalculator distanceCalculator = Beacon.getDistanceCalculator();
+        if (!(distanceCalculator instanceof BatchDistanceCalculator)) {
+            // getDistance works them out one at a time when asked
+            return;
+        }
+        List<Beacon> pending = new ArrayList<Beacon>(beacons.size());
+        for (Beacon beacon : beacons) {
+            if (beacon.mDistance == null) {
+                pending.add(beacon);
+            }
+        }
+        int count = pending.size();
+        int[] txPowers = new int[count];
+        double[] rssis = new double[count];
+        double[] distances = new double[count];
+        for (int i = 0; i < count; i++) {
+            Beacon beacon = pending.get(i);
+            txPowers[i] = beacon.mTxPower;
+            rssis[i] = beacon.mRunningAverageRssi != null ? beacon.mRunningAverageRssi : beacon.mRssi;
+        }
+        ((BatchDistanceCalculator) distanceCalculator).calculateDistances(txPowers, rssis, distances);
+        for (int i = 0; i < count; i++) {
+            pending.get(i).mDistance = distances[i];
+        }
+    }
+
     /**
      * Builder class for Beacon objects. Provides a convenient way to set the various fields of a
      * Beacon
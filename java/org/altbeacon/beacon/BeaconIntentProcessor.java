@@ -26,6 +26,8 @@ package org.altbeacon.beacon;
 import org.altbeacon.beacon.logging.LogManager;
 import org.altbeacon.beacon.service.MonitoringData;
 import org.altbeacon.beacon.service.RangingData;
+import org.altbeacon.beacon.service.RangingDataBatch;
+import org.altbeacon.beacon.service.RangingDelta;
 
 import android.annotation.TargetApi;
 import android.app.IntentService;
@@ -48,44 +50,28 @@ public class BeaconIntentProcessor extends IntentService {
 
         MonitoringData monitoringData = null;
         RangingData rangingData = null;
+        RangingDataBatch rangingDataBatch = null;
+        RangingDelta rangingDelta = null;
 
         if (intent != null && intent.getExtras() != null) {
             monitoringData = (MonitoringData) intent.getExtras().get("monitoringData");
             rangingData = (RangingData) intent.getExtras().get("rangingData");
+            rangingDataBatch = (RangingDataBatch) intent.getExtras().get("rangingDataBatch");
+            rangingDelta = (RangingDelta) intent.getExtras().get("rangingDelta");
         }
 
+        NotifierDispatcher dispatcher = new NotifierDispatcher(this);
         if (rangingData != null) {
-            LogManager.d(TAG, "got ranging data");
-            if (rangingData.getBeacons() == null) {
-                LogManager.w(TAG, "Ranging data has a null beacons collection");
-            }
-            RangeNotifier notifier = BeaconManager.getInstanceForApplication(this).getRangingNotifier();
-            java.util.Collection<Beacon> beacons = rangingData.getBeacons();
-            if (notifier != null) {
-                notifier.didRangeBeaconsInRegion(beacons, rangingData.getRegion());
-            }
-            else {
-                LogManager.d(TAG, "but ranging notifier is null, so we're dropping it.");
-            }
-            RangeNotifier dataNotifier = BeaconManager.getInstanceForApplication(this).getDataRequestNotifier();
-            if (dataNotifier != null) {
-                dataNotifier.didRangeBeaconsInRegion(beacons, rangingData.getRegion());
-            }
+            dispatcher.dispatch(rangingData);
+        }
+        if (rangingDataBatch != null) {
+            dispatcher.dispatch(rangingDataBatch);
+        }
+        if (rangingDelta != null) {
+            dispatcher.dispatch(rangingDelta);
         }
-
         if (monitoringData != null) {
-            LogManager.d(TAG, "got monitoring data");
-            MonitorNotifier notifier = BeaconManager.getInstanceForApplication(this).getMonitoringNotifier();
-            if (notifier != null) {
-                LogManager.d(TAG, "Calling monitoring notifier: %s", notifier);
-                notifier.didDetermineStateForRegion(monitoringData.isInside() ? MonitorNotifier.INSIDE : MonitorNotifier.OUTSIDE, monitoringData.getRegion());
-                if (monitoringData.isInside()) {
-                    notifier.didEnterRegion(monitoringData.getRegion());
-                }
-                else {
-                    notifier.didExitRegion(monitoringData.getRegion());
-                }
-            }
+            dispatcher.dispatch(monitoringData);
         }
     }
 }
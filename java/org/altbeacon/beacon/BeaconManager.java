@@ -37,10 +37,19 @@ import android.os.RemoteException;
 
 import org.altbeacon.beacon.logging.LogManager;
 import org.altbeacon.beacon.logging.Loggers;
+import org.altbeacon.beacon.service.AdaptiveExitPeriod;
 import org.altbeacon.beacon.service.BeaconService;
+import org.altbeacon.beacon.service.Callback;
+import org.altbeacon.beacon.service.DuplicateAdvertisementCache;
+import org.altbeacon.beacon.service.PooledRssiFilterFactory;
 import org.altbeacon.beacon.service.scanner.NonBeaconLeScanCallback;
 import org.altbeacon.beacon.service.RangeState;
+import org.altbeacon.beacon.service.ScanIngestionRing;
 import org.altbeacon.beacon.service.RangedBeacon;
+import org.altbeacon.beacon.service.RangingDataBatch;
+import org.altbeacon.beacon.service.RangingDelta;
+import org.altbeacon.beacon.service.RssiFilter;
+import org.altbeacon.beacon.service.RssiFilterFactory;
 import org.altbeacon.beacon.service.RunningAverageRssiFilter;
 import org.altbeacon.beacon.service.StartRMData;
 import org.altbeacon.beacon.simulator.BeaconSimulator;
@@ -48,6 +57,7 @@ import org.altbeacon.beacon.simulator.BeaconSimulator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +65,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * A class used to set up interaction with beacons from an <code>Activity</code> or <code>Service</code>.
@@ -112,9 +123,12 @@ public class BeaconManager {
     private Messenger serviceMessenger = null;
     protected RangeNotifier rangeNotifier = null;
     protected RangeNotifier dataRequestNotifier = null;
+    protected DeltaRangeNotifier deltaRangeNotifier = null;
     protected MonitorNotifier monitorNotifier = null;
     private final ArrayList<Region> monitoredRegions = new ArrayList<Region>();
     private final ArrayList<Region> rangedRegions = new ArrayList<Region>();
+    // beacons in each region rebuilt from ranging deltas, for the full range notifiers
+    private final Map<Region, Map<Beacon, Beacon>> deltaRangedBeacons = new HashMap<Region, Map<Beacon, Beacon>>();
     private final List<BeaconParser> beaconParsers = new CopyOnWriteArrayList<>();
     private NonBeaconLeScanCallback mNonBeaconLeScanCallback;
     private boolean mBackgroundMode = false;
@@ -225,6 +239,42 @@ public class BeaconManager {
         sExitRegionPeriod = regionExitPeriod;
     }
     
+    /**
+     * Lets each monitored region learn its own exit period from the longest gaps between
+     * detections of its beacons over the last several minutes, instead of using the region exit
+     * period.  Regions whose beacons drop out for longer then stop flapping between exit and
+     * entry.  Learned periods are never shorter than the region exit period unless a lower floor
+     * is set.  Disabled by default.
+     *
+     * @param enabled
+     * @see AdaptiveExitPeriod
+     */
+    public static void setAdaptiveRegionExitEnabled(boolean enabled) {
+        AdaptiveExitPeriod.setEnabled(enabled);
+    }
+
+    /**
+     * Sets the limits of learned region exit periods.  Defaults to the region exit period and 60
+     * seconds.
+     *
+     * @param floorMillis the shortest learned period, or -1 for the region exit period
+     * @param ceilingMillis
+     */
+    public static void setAdaptiveRegionExitLimits(long floorMillis, long ceilingMillis) {
+        AdaptiveExitPeriod.setLimits(floorMillis, ceilingMillis);
+    }
+
+    /**
+     * Sets the percentile of detection gaps that learned region exit periods are based on.
+     * Defaults to 1, the longest gap of the last several minutes.  Lower values let a region
+     * forget single long outages, at the cost of exiting again when they recur.
+     *
+     * @param percentile between 0 and 1
+     */
+    public static void setAdaptiveRegionExitPercentile(double percentile) {
+        AdaptiveExitPeriod.setPercentile(percentile);
+    }
+
     /**
      * Get region exit milliseconds
      *
@@ -427,6 +477,18 @@ public class BeaconManager {
         rangeNotifier = notifier;
     }
 
+    /**
+     * Specifies a class that should be called with the beacons that entered, changed or left a
+     * ranged region.  Only called when delta ranging is enabled.
+     *
+     * @param notifier
+     * @see DeltaRangeNotifier
+     * @see #setDeltaRangingEnabled(boolean)
+     */
+    public void setDeltaRangeNotifier(DeltaRangeNotifier notifier) {
+        deltaRangeNotifier = notifier;
+    }
+
     /**
      * Specifies a class that should be called each time the <code>BeaconService</code> sees
      * or stops seeing a Region of beacons.
@@ -472,6 +534,10 @@ public class BeaconManager {
         synchronized (rangedRegions) {
             rangedRegions.add(region);
         }
+        synchronized (deltaRangedBeacons) {
+            // the service starts the region over, so its first delta lists every beacon as entered
+            deltaRangedBeacons.remove(region);
+        }
     }
 
     /**
@@ -506,6 +572,9 @@ public class BeaconManager {
             }
             rangedRegions.remove(regionToRemove);
         }
+        synchronized (deltaRangedBeacons) {
+            deltaRangedBeacons.remove(region);
+        }
     }
 
     /**
@@ -643,6 +712,39 @@ public class BeaconManager {
         return this.rangeNotifier;
     }
 
+    /**
+     * @return deltaRangeNotifier
+     * @see #deltaRangeNotifier
+     */
+    public DeltaRangeNotifier getDeltaRangeNotifier() {
+        return this.deltaRangeNotifier;
+    }
+
+    /**
+     * Applies ranging changes to the beacons known to be in their region.  Beacons without changes
+     * keep the values they were last delivered with.
+     * @return all beacons now in the region
+     */
+    Collection<Beacon> applyRangingDelta(RangingDelta delta) {
+        synchronized (deltaRangedBeacons) {
+            Map<Beacon, Beacon> beacons = deltaRangedBeacons.get(delta.getRegion());
+            if (beacons == null) {
+                beacons = new HashMap<Beacon, Beacon>();
+                deltaRangedBeacons.put(delta.getRegion(), beacons);
+            }
+            for (Beacon beacon : delta.getLeft()) {
+                beacons.remove(beacon);
+            }
+            for (Beacon beacon : delta.getEntered()) {
+                beacons.put(beacon, beacon);
+            }
+            for (Beacon beacon : delta.getChanged()) {
+                beacons.put(beacon, beacon);
+            }
+            return new ArrayList<Beacon>(beacons.values());
+        }
+    }
+
     /**
      * @return the list of regions currently being monitored
      */
@@ -706,14 +808,37 @@ public class BeaconManager {
      */
     protected static Class rssiFilterImplClass = RunningAverageRssiFilter.class;
 
+    protected static RssiFilterFactory rssiFilterFactory = new PooledRssiFilterFactory(RunningAverageRssiFilter.class);
+
+    /**
+     * Sets the class of the rssi filter and a pooling factory for it
+     * @param c a class implementing RssiFilter
+     * @throws ClassCastException if the class does not implement RssiFilter
+     * @see #setRssiFilterFactory(RssiFilterFactory)
+     */
     public static void setRssiFilterImplClass(Class c) {
-        rssiFilterImplClass = c;
+        Class<? extends RssiFilter> filterClass = ((Class<?>) c).asSubclass(RssiFilter.class);
+        rssiFilterImplClass = filterClass;
+        rssiFilterFactory = new PooledRssiFilterFactory(filterClass);
     }
 
     public static Class getRssiFilterImplClass() {
         return rssiFilterImplClass;
     }
 
+    /**
+     * Sets the factory that creates the rssi filter of each ranged beacon and takes back the
+     * filters of beacons that are no longer tracked.  Overrides the rssi filter class.
+     * @param factory
+     */
+    public static void setRssiFilterFactory(RssiFilterFactory factory) {
+        rssiFilterFactory = factory;
+    }
+
+    public static RssiFilterFactory getRssiFilterFactory() {
+        return rssiFilterFactory;
+    }
+
     /**
      * Allow the library to use a tracking cache
      * @param useTrackingCache
@@ -722,6 +847,120 @@ public class BeaconManager {
         RangeState.setUseTrackingCache(useTrackingCache);
     }
 
+    /**
+     * Keeps the beacons of each ranged region in primitive arrays instead of an object per beacon,
+     * which reduces garbage collection when thousands of beacons are in range.  Only used with the
+     * default RunningAverageRssiFilter, whose averages it reproduces.  Disabled by default.  Takes
+     * effect for regions ranged afterwards.
+     * @param enabled
+     */
+    public static void setDenseRangeStoreEnabled(boolean enabled) {
+        RangeState.setDenseStoreEnabled(enabled);
+    }
+
+    /**
+     * Allows scan records that are byte-for-byte identical to one already processed from the same
+     * device in the current scan cycle to skip parsing and region matching.  Only their signal
+     * strength is recorded.  Enabled by default.  Takes effect when the beacon service is next
+     * created.
+     * @param enabled
+     */
+    public static void setDuplicateSuppressionEnabled(boolean enabled) {
+        DuplicateAdvertisementCache.setEnabled(enabled);
+    }
+
+    /**
+     * Delivers the ranging results of each scan cycle for all regions in one callback instead of
+     * one per region, cutting the number of service starts and parcels per cycle.  The ranging
+     * notifier is still called once per region.  Disabled by default.
+     * @param enabled
+     */
+    public static void setRangingBatchDeliveryEnabled(boolean enabled) {
+        RangingDataBatch.setEnabled(enabled);
+    }
+
+    /**
+     * Delivers only the beacons that entered, left, or changed beyond the delta thresholds in each
+     * scan cycle, and nothing for regions without changes.  Unchanged beacons are left out of the
+     * payload.  The delta range notifier receives the changes.  A range notifier still receives all
+     * beacons in the region, rebuilt from the changes, with two differences from full ranging: it
+     * is only called after cycles with changes, and beacons that did not change carry the RSSI,
+     * running average and distance they had when they last entered or changed, not current
+     * values.  Disabled by default.
+     * @param enabled
+     * @see #setDeltaRangeNotifier(DeltaRangeNotifier)
+     */
+    public static void setDeltaRangingEnabled(boolean enabled) {
+        RangingDelta.setEnabled(enabled);
+    }
+
+    /**
+     * Sets how far a beacon's running average RSSI or distance must move from the last delivered
+     * value before delta ranging reports it as changed.  Defaults to 5 dBm and 0.5 meters.
+     * @param rssiThreshold in dBm
+     * @param distanceThreshold in meters
+     */
+    public static void setDeltaRangingThresholds(int rssiThreshold, double distanceThreshold) {
+        RangingDelta.setRssiThreshold(rssiThreshold);
+        RangingDelta.setDistanceThreshold(distanceThreshold);
+    }
+
+    /**
+     * When the beacon service runs in the same process as the app, results are handed to the
+     * notifiers directly instead of through an intent to {@link BeaconIntentProcessor}, which
+     * skips parceling and the intent service.  The notifiers still get copies of the beacons, as
+     * they would from an intent.  Enabled by default.
+     * @param enabled
+     */
+    public static void setDirectCallbackDeliveryEnabled(boolean enabled) {
+        Callback.setDirectDeliveryEnabled(enabled);
+    }
+
+    /**
+     * Sets the executor that runs notifiers called directly by an in-process beacon service.  By
+     * default a single background thread calls them in order.
+     * @param executor the executor, or null for the default
+     */
+    public static void setDirectCallbackExecutor(Executor executor) {
+        Callback.setDirectDeliveryExecutor(executor);
+    }
+
+    /**
+     * Sets how many scan results can wait to be processed before the overflow policy applies.
+     * Takes effect when the beacon service is next created.
+     * @param capacity number of queued scan results, divided between the processing threads
+     */
+    public static void setScanIngestionCapacity(int capacity) {
+        ScanIngestionRing.setDefaultCapacity(capacity);
+    }
+
+    /**
+     * Sets which scan results are lost when they arrive faster than they can be processed.
+     * Takes effect when the beacon service is next created.
+     * @param policy defaults to {@link ScanIngestionRing.OverflowPolicy#DROP_OLDEST}
+     */
+    public static void setScanOverflowPolicy(ScanIngestionRing.OverflowPolicy policy) {
+        ScanIngestionRing.setDefaultOverflowPolicy(policy);
+    }
+
+    /**
+     * Makes the beacon parsers and the Identifier factory methods return shared instances from a
+     * bounded pool, so identifiers seen repeatedly are not copied for every packet.  Replaces any
+     * existing pool, discarding its contents and counters.
+     * @param capacity maximum number of pooled identifiers, or 0 to disable pooling (the default)
+     */
+    public static void setIdentifierPoolCapacity(int capacity) {
+        IdentifierPool.setSharedPoolCapacity(capacity);
+    }
+
+    /**
+     * @return the shared identifier pool, for reading its hit rate and size, or null if pooling
+     * is disabled
+     */
+    public static IdentifierPool getIdentifierPool() {
+        return IdentifierPool.getSharedPool();
+    }
+
     /**
      * Set the period of time, in which a beacon did not receive new
      * measurements
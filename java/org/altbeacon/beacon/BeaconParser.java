@@ -3,10 +3,9 @@ package org.altbeacon.beacon;
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothDevice;
 import android.os.Build;
-import android.util.Log;
 
 import org.altbeacon.beacon.logging.LogManager;
-import org.altbeacon.bluetooth.BleAdvertisement;
+import org.altbeacon.bluetooth.AdStructureCursor;
 import org.altbeacon.bluetooth.Pdu;
 
 import java.util.ArrayList;
@@ -73,6 +72,14 @@ public class BeaconParser {
     protected Integer mLayoutSize;
     protected Boolean mAllowPduOverflow;
     protected int[] mHardwareAssistManufacturers = new int[] { 0x004c };
+    private volatile CompiledLayout mCompiledLayout;
+
+    private static final ThreadLocal<DecodeBuffer> sDecodeBuffers = new ThreadLocal<DecodeBuffer>() {
+        @Override
+        protected DecodeBuffer initialValue() {
+            return new DecodeBuffer();
+        }
+    };
 
     /**
      * Makes a new BeaconParser.  Should normally be immediately followed by a call to #setLayout
@@ -154,7 +161,7 @@ public class BeaconParser {
      */
     public BeaconParser setBeaconLayout(String beaconLayout) {
 
-        Log.d(TAG, "Parsing beacon layout: "+beaconLayout);
+        LogManager.d(TAG, "Parsing beacon layout: %s", beaconLayout);
 
         String[] terms =  beaconLayout.split(",");
         mExtraFrame = false; // this is not an extra frame by default
@@ -271,6 +278,7 @@ public class BeaconParser {
             throw new BeaconLayoutException("You must supply a matching beacon type expression with a prefix of 'm'");
         }
         mLayoutSize = calculateLayoutSize();
+        compileLayout();
         return this;
     }
 
@@ -370,200 +378,236 @@ public class BeaconParser {
      */
     @TargetApi(5)
     public Beacon fromScanData(byte[] scanData, int rssi, BluetoothDevice device) {
-        return fromScanData(scanData, rssi, device, new Beacon());
+        DecodeBuffer decoded = sDecodeBuffers.get();
+        if (!decode(scanData, decoded)) {
+            return null;
+        }
+        return fromDecodeBuffer(decoded, rssi, device);
     }
 
     @TargetApi(5)
     protected Beacon fromScanData(byte[] bytesToProcess, int rssi, BluetoothDevice device, Beacon beacon) {
-        BleAdvertisement advert = new BleAdvertisement(bytesToProcess);
-        boolean parseFailed = false;
-        Pdu pduToParse = null;
-        int startByte = 0;
-        ArrayList<Identifier> identifiers = new ArrayList<Identifier>();
-        ArrayList<Long> dataFields = new ArrayList<Long>();
-
-        for (Pdu pdu: advert.getPdus()) {
-            if (pdu.getType() == Pdu.GATT_SERVICE_UUID_PDU_TYPE ||
-                    pdu.getType() == Pdu.MANUFACTURER_DATA_PDU_TYPE) {
-                pduToParse = pdu;
-                if (LogManager.isVerboseLoggingEnabled()) {
-                    LogManager.d(TAG, "Processing pdu type %02X: %s with startIndex: %d, endIndex: %d", pdu.getType(), bytesToHex(bytesToProcess), pdu.getStartIndex(), pdu.getEndIndex());
-                }
-                break;
+        DecodeBuffer decoded = sDecodeBuffers.get();
+        if (!decode(bytesToProcess, decoded)) {
+            return null;
+        }
+        return populateBeacon(decoded, rssi, device, beacon);
+    }
+
+    /**
+     * Constructs Beacons from a batch of Bluetooth LE packets in one pass.  Entries of
+     * <code>results</code> that are already set are skipped, so several parsers can be applied to
+     * the same batch in priority order.
+     *
+     * @param scanRecords The actual packet bytes
+     * @param rssis The measured signal strength of each packet
+     * @param devices The Bluetooth device that sent each packet
+     * @param count the number of valid entries in the arrays
+     * @param results receives a Beacon for each packet this parser matches
+     * @return the number of packets this parser matched
+     */
+    public int fromScanData(byte[][] scanRecords, int[] rssis, BluetoothDevice[] devices, int count, Beacon[] results) {
+        DecodeBuffer decoded = sDecodeBuffers.get();
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (results[i] == null && decode(scanRecords[i], decoded)) {
+                results[i] = fromDecodeBuffer(decoded, rssis[i], devices[i]);
+                matched++;
             }
-            else {
-                if (LogManager.isVerboseLoggingEnabled()) {
-                    LogManager.d(TAG, "Ignoring pdu type %02X", pdu.getType());
-                }
+        }
+        return matched;
+    }
+
+    /**
+     * Checks a Bluetooth LE packet against this layout and, if it matches, records the offsets and
+     * field values into a caller-supplied buffer.  No objects are allocated, so the buffer may be
+     * reused across packets, and packets that do not match cost nothing beyond the byte compares.
+     * Each manufacturer and service data PDU in the packet is tried in turn until one matches.
+     * Use {@link #fromDecodeBuffer(DecodeBuffer, int, BluetoothDevice)} to turn a match into a
+     * <code>Beacon</code>.
+     *
+     * @param scanData The actual packet bytes
+     * @param target buffer that receives the decoded fields
+     * @return true if the packet matches this layout and was decoded into the buffer
+     */
+    public boolean decode(byte[] scanData, DecodeBuffer target) {
+        target.mMatched = false;
+        AdStructureCursor cursor = target.startPdus(scanData);
+        boolean foundPdu = false;
+        while (nextPduToParse(cursor, target)) {
+            foundPdu = true;
+            if (decodePdu(scanData, target)) {
+                return true;
             }
         }
-        if (pduToParse == null) {
+        if (!foundPdu && LogManager.isVerboseLoggingEnabled()) {
+            LogManager.d(TAG, "No PDUs to process in this packet.");
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #decode(byte[], DecodeBuffer)}, but only tries the PDU whose bounds were
+     * recorded in the buffer by {@link #nextPduToParse(AdStructureCursor, DecodeBuffer)}, so
+     * several parsers can be tried against one PDU without walking its AD structures again.
+     */
+    boolean decodePdu(byte[] scanData, DecodeBuffer target) {
+        CompiledLayout layout = mCompiledLayout;
+        target.mMatched = false;
+        if (layout == null) {
+            return false;
+        }
+        int startByte = target.mPduStartIndex;
+        int pduEndIndex = target.mPduEndIndex;
+        if (LogManager.isVerboseLoggingEnabled()) {
+            LogManager.d(TAG, "Processing pdu type %02X: %s with startIndex: %d, endIndex: %d", target.mPduType, bytesToHex(scanData), startByte, pduEndIndex);
+        }
+
+        if (!layout.matches(scanData, startByte)) {
+            // This is not a beacon
             if (LogManager.isVerboseLoggingEnabled()) {
-                LogManager.d(TAG, "No PDUs to process in this packet.");
+                if (layout.serviceUuidBytes == null) {
+                    LogManager.d(TAG, "This is not a matching Beacon advertisement. (Was expecting %s.  "
+                                    + "The bytes I see are: %s", byteArrayToString(layout.typeCodeBytes),
+                            bytesToHex(scanData));
+                } else {
+                    LogManager.d(TAG, "This is not a matching Beacon advertisement. Was expecting %s at offset %d and %s at offset %d.  "
+                                    + "The bytes I see are: %s",
+                            byteArrayToString(layout.serviceUuidBytes),
+                            startByte + layout.serviceUuidStartOffset,
+                            byteArrayToString(layout.typeCodeBytes),
+                            startByte + layout.typeCodeStartOffset,
+                            bytesToHex(scanData));
+                }
             }
-            parseFailed = true;
+            return false;
+        }
+        if (LogManager.isVerboseLoggingEnabled()) {
+            LogManager.d(TAG, "This is a recognized beacon advertisement -- %s seen",
+                    byteArrayToString(layout.typeCodeBytes));
         }
-        else {
-            byte[] serviceUuidBytes = null;
-            byte[] typeCodeBytes = longToByteArray(getMatchingBeaconTypeCode(), mMatchingBeaconTypeCodeEndOffset - mMatchingBeaconTypeCodeStartOffset + 1);
-            if (getServiceUuid() != null) {
-                serviceUuidBytes = longToByteArray(getServiceUuid(), mServiceUuidEndOffset - mServiceUuidStartOffset + 1, false);
-            }
-            startByte = pduToParse.getStartIndex();
-            boolean patternFound = false;
 
-            if (getServiceUuid() == null) {
-                if (byteArraysMatch(bytesToProcess, startByte + mMatchingBeaconTypeCodeStartOffset, typeCodeBytes, 0)) {
-                    patternFound = true;
+        // If the layout is bigger than the packet and we allow overflow, fields past the end of the
+        // byte array read as zero, exactly as if the buffer had been zero padded.
+        boolean allowPduOverflow = mAllowPduOverflow;
+        target.ensureCapacity(layout.identifierStartOffsets.length, layout.dataStartOffsets.length);
+        target.mBytes = scanData;
+        target.mIdentifierCount = layout.identifierStartOffsets.length;
+        for (int i = 0; i < layout.identifierStartOffsets.length; i++) {
+            int startIndex = layout.identifierStartOffsets[i] + startByte;
+            int endIndex = layout.identifierEndOffsets[i] + startByte;
+            if (endIndex > pduEndIndex && layout.identifierVariableLengthFlags[i]) {
+                if (LogManager.isVerboseLoggingEnabled()) {
+                    LogManager.d(TAG, "Need to truncate identifier by "+(endIndex-pduEndIndex));
                 }
-            } else {
-                if (byteArraysMatch(bytesToProcess, startByte + mServiceUuidStartOffset, serviceUuidBytes, 0) &&
-                        byteArraysMatch(bytesToProcess, startByte + mMatchingBeaconTypeCodeStartOffset, typeCodeBytes, 0)) {
-                    patternFound = true;
+                // If this is a variable length identifier, we truncate it to the size that
+                // is available in the packet
+                endIndex = pduEndIndex < startIndex ? startIndex - 1 : pduEndIndex;
+            }
+            else if (endIndex > pduEndIndex && !allowPduOverflow) {
+                if (LogManager.isVerboseLoggingEnabled()) {
+                    LogManager.d(TAG, "Cannot parse identifier "+i+" because PDU is too short.  endIndex: " + endIndex + " PDU endIndex: " + pduEndIndex);
                 }
+                return false;
             }
+            target.mIdentifierStartIndexes[i] = startIndex;
+            target.mIdentifierEndIndexes[i] = endIndex + 1;
+            target.mIdentifierLittleEndianFlags[i] = layout.identifierLittleEndianFlags[i];
+        }
 
-            if (patternFound == false) {
-                // This is not a beacon
-                if (getServiceUuid() == null) {
-                    if (LogManager.isVerboseLoggingEnabled()) {
-                        LogManager.d(TAG, "This is not a matching Beacon advertisement. (Was expecting %s.  "
-                                        + "The bytes I see are: %s", byteArrayToString(typeCodeBytes),
-                                bytesToHex(bytesToProcess));
-
-                    }
-                } else {
-                    if (LogManager.isVerboseLoggingEnabled()) {
-                        LogManager.d(TAG, "This is not a matching Beacon advertisement. Was expecting %s at offset %d and %s at offset %d.  "
-                                        + "The bytes I see are: %s",
-                                byteArrayToString(serviceUuidBytes),
-                                startByte + mServiceUuidStartOffset,
-                                byteArrayToString(typeCodeBytes),
-                                startByte + mMatchingBeaconTypeCodeStartOffset,
-                                bytesToHex(bytesToProcess));
-                    }
-                }
-                parseFailed = true;
-                beacon =  null;
-            } else {
+        target.mDataFieldCount = layout.dataStartOffsets.length;
+        for (int i = 0; i < layout.dataStartOffsets.length; i++) {
+            int endIndex = layout.dataEndOffsets[i] + startByte;
+            if (endIndex > pduEndIndex && !allowPduOverflow) {
                 if (LogManager.isVerboseLoggingEnabled()) {
-                    LogManager.d(TAG, "This is a recognized beacon advertisement -- %s seen",
-                            byteArrayToString(typeCodeBytes));
+                    LogManager.d(TAG, "Cannot parse data field "+i+" because PDU is too short.  endIndex: " + endIndex + " PDU endIndex: " + pduEndIndex+".  Setting value to 0");
                 }
+                target.mDataFields[i] = 0l;
             }
+            else {
+                target.mDataFields[i] = readUnsigned(scanData, layout.dataStartOffsets[i] + startByte, endIndex, layout.dataLittleEndianFlags[i]);
+            }
+        }
 
-            if (patternFound) {
-                if (bytesToProcess.length <= startByte+mLayoutSize && mAllowPduOverflow) {
-                    // If the layout size is bigger than this PDU, and we allow overflow.  Make sure
-                    // the byte buffer is big enough by zero padding the end so we don't try to read
-                    // outside the byte array of the advertisement
-                    if (LogManager.isVerboseLoggingEnabled()) {
-                        LogManager.d(TAG, "Expanding buffer because it is too short to parse: "+bytesToProcess.length+", needed: "+(startByte+mLayoutSize));
-                    }
-                    bytesToProcess = ensureMaxSize(bytesToProcess, startByte+mLayoutSize);
-                }
-                for (int i = 0; i < mIdentifierEndOffsets.size(); i++) {
-                    int endIndex = mIdentifierEndOffsets.get(i) + startByte;
-
-                    if (endIndex > pduToParse.getEndIndex() && mIdentifierVariableLengthFlags.get(i)) {
-                        if (LogManager.isVerboseLoggingEnabled()) {
-                            LogManager.d(TAG, "Need to truncate identifier by "+(endIndex-pduToParse.getEndIndex()));
-                        }
-                        // If this is a variable length identifier, we truncate it to the size that
-                        // is available in the packet
-                        Identifier identifier = Identifier.fromBytes(bytesToProcess, mIdentifierStartOffsets.get(i) + startByte, pduToParse.getEndIndex()+1, mIdentifierLittleEndianFlags.get(i));
-                        identifiers.add(identifier);
-                    }
-                    else if (endIndex > pduToParse.getEndIndex() && !mAllowPduOverflow) {
-                        parseFailed = true;
-                        if (LogManager.isVerboseLoggingEnabled()) {
-                            LogManager.d(TAG, "Cannot parse identifier "+i+" because PDU is too short.  endIndex: " + endIndex + " PDU endIndex: " + pduToParse.getEndIndex());
-                        }
-                    }
-                    else {
-                        Identifier identifier = Identifier.fromBytes(bytesToProcess, mIdentifierStartOffsets.get(i) + startByte, endIndex+1, mIdentifierLittleEndianFlags.get(i));
-                        identifiers.add(identifier);
-                    }
-                }
-                for (int i = 0; i < mDataEndOffsets.size(); i++) {
-                    int endIndex = mDataEndOffsets.get(i) + startByte;
-                    if (endIndex > pduToParse.getEndIndex() && !mAllowPduOverflow) {
-                        if (LogManager.isVerboseLoggingEnabled()) {
-                            LogManager.d(TAG, "Cannot parse data field "+i+" because PDU is too short.  endIndex: " + endIndex + " PDU endIndex: " + pduToParse.getEndIndex()+".  Setting value to 0");
-                        }
-                        dataFields.add(new Long(0l));
-                    }
-                    else {
-                        String dataString = byteArrayToFormattedString(bytesToProcess, mDataStartOffsets.get(i) + startByte, endIndex, mDataLittleEndianFlags.get(i));
-                        dataFields.add(Long.parseLong(dataString));
-                    }
+        target.mHasTxPower = false;
+        if (layout.hasPower) {
+            int endIndex = layout.powerEndOffset + startByte;
+            if (endIndex > pduEndIndex && !allowPduOverflow) {
+                if (LogManager.isVerboseLoggingEnabled()) {
+                    LogManager.d(TAG, "Cannot parse power field because PDU is too short.  endIndex: " + endIndex + " PDU endIndex: " + pduEndIndex);
                 }
-
-                if (mPowerStartOffset != null) {
-                    int endIndex = mPowerEndOffset + startByte;
-                    int txPower = 0;
-                    try {
-                        if (endIndex > pduToParse.getEndIndex() && !mAllowPduOverflow) {
-                            parseFailed = true;
-                            if (LogManager.isVerboseLoggingEnabled()) {
-                                LogManager.d(TAG, "Cannot parse power field because PDU is too short.  endIndex: " + endIndex + " PDU endIndex: " + pduToParse.getEndIndex());
-                            }
-                        }
-                        else {
-                            String powerString = byteArrayToFormattedString(bytesToProcess, mPowerStartOffset + startByte, mPowerEndOffset + startByte, false);
-                            txPower = Integer.parseInt(powerString)+mDBmCorrection;
-                            // make sure it is a signed integer
-                            if (txPower > 127) {
-                                txPower -= 256;
-                            }
-                            beacon.mTxPower = txPower;
-                        }
-                    }
-                    catch (NumberFormatException e1) {
-                        // keep default value
-                    }
-                    catch (NullPointerException e2) {
-                        // keep default value
-                    }
+                return false;
+            }
+            // Fields wider than four bytes were never parseable as a power value, so keep the
+            // default value for them
+            if (layout.powerEndOffset - layout.powerStartOffset < 4) {
+                int txPower = (int) readUnsigned(scanData, layout.powerStartOffset + startByte, endIndex, false) + layout.powerCorrection;
+                // make sure it is a signed integer
+                if (txPower > 127) {
+                    txPower -= 256;
                 }
+                target.mTxPower = txPower;
+                target.mHasTxPower = true;
             }
         }
 
-        if (parseFailed) {
-            beacon = null;
-        }
-        else {
-            int beaconTypeCode = 0;
-            String beaconTypeString = byteArrayToFormattedString(bytesToProcess, mMatchingBeaconTypeCodeStartOffset+startByte, mMatchingBeaconTypeCodeEndOffset+startByte, false);
-            beaconTypeCode = Integer.parseInt(beaconTypeString);
-            // TODO: error handling needed on the parse
+        target.mBeaconTypeCode = (int) readUnsigned(scanData, layout.typeCodeStartOffset + startByte, layout.typeCodeEndOffset + startByte, false);
+        target.mManufacturer = (int) readUnsigned(scanData, startByte, startByte + 1, true);
+        target.mServiceUuid = layout.serviceUuidBytes == null ? -1 : layout.serviceUuid;
+        target.mMatched = true;
+        return true;
+    }
 
-            int manufacturer = 0;
-            String manufacturerString = byteArrayToFormattedString(bytesToProcess, startByte, startByte+1, true);
-            manufacturer = Integer.parseInt(manufacturerString);
+    /**
+     * Constructs a Beacon from a buffer previously filled by a successful call to
+     * {@link #decode(byte[], DecodeBuffer)} on this parser.  Only the identifiers and the Beacon
+     * itself are allocated here.
+     *
+     * @param decoded a buffer holding a matched packet
+     * @param rssi The measured signal strength of the packet
+     * @param device The Bluetooth device that was detected
+     * @return An instance of a <code>Beacon</code>, or null if the buffer holds no match
+     */
+    public Beacon fromDecodeBuffer(DecodeBuffer decoded, int rssi, BluetoothDevice device) {
+        if (!decoded.mMatched) {
+            return null;
+        }
+        return populateBeacon(decoded, rssi, device, new Beacon());
+    }
 
-            String macAddress = null;
-            String name = null;
-            if (device != null) {
-                macAddress = device.getAddress();
-                name = device.getName();
-            }
+    protected Beacon populateBeacon(DecodeBuffer decoded, int rssi, BluetoothDevice device, Beacon beacon) {
+        if (!decoded.mMatched) {
+            return null;
+        }
+        ArrayList<Identifier> identifiers = new ArrayList<Identifier>(decoded.mIdentifierCount);
+        for (int i = 0; i < decoded.mIdentifierCount; i++) {
+            identifiers.add(decoded.identifier(i));
+        }
+        ArrayList<Long> dataFields = new ArrayList<Long>(decoded.mDataFieldCount);
+        for (int i = 0; i < decoded.mDataFieldCount; i++) {
+            dataFields.add(decoded.mDataFields[i]);
+        }
 
-            beacon.mIdentifiers = identifiers;
-            beacon.mDataFields = dataFields;
-            beacon.mRssi = rssi;
-            beacon.mBeaconTypeCode = beaconTypeCode;
-            if (mServiceUuid != null) {
-                beacon.mServiceUuid = (int) mServiceUuid.longValue();
-            }
-            else {
-                beacon.mServiceUuid = -1;
-            }
+        String macAddress = null;
+        String name = null;
+        if (device != null) {
+            macAddress = device.getAddress();
+            name = device.getName();
+        }
 
-            beacon.mBluetoothAddress = macAddress;
-            beacon.mBluetoothName= name;
-            beacon.mManufacturer = manufacturer;
+        beacon.mIdentifiers = identifiers;
+        beacon.mDataFields = dataFields;
+        beacon.mRssi = rssi;
+        if (decoded.mHasTxPower) {
+            beacon.mTxPower = decoded.mTxPower;
         }
+        beacon.mBeaconTypeCode = decoded.mBeaconTypeCode;
+        beacon.mServiceUuid = decoded.mServiceUuid;
+        beacon.mBluetoothAddress = macAddress;
+        beacon.mBluetoothName = name;
+        beacon.mManufacturer = decoded.mManufacturer;
+        // computed here, on the scanning thread, so lookups in the service do not have to
+        beacon.fingerprint();
         return beacon;
     }
 
@@ -682,6 +726,7 @@ public class BeaconParser {
 
     public BeaconParser setMatchingBeaconTypeCode(Long typeCode) {
         mMatchingBeaconTypeCode = typeCode;
+        compileLayout();
         return this;
     }
 
@@ -771,15 +816,6 @@ public class BeaconParser {
         return lastEndOffset+1;
     }
 
-    private boolean byteArraysMatch(byte[] array1, int offset1, byte[] array2, int offset2) {
-        int minSize = array1.length > array2.length ? array2.length : array1.length;
-        for (int i = 0; i <  minSize; i++) {
-            if (array1[i+offset1] != array2[i+offset2]) {
-                return false;
-            }
-        }
-        return true;
-    }
     private String byteArrayToString(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < bytes.length; i++) {
@@ -789,60 +825,252 @@ public class BeaconParser {
         return sb.toString().trim();
     }
 
-    private String byteArrayToFormattedString(byte[] byteBuffer, int startIndex, int endIndex, boolean littleEndian) {
-        byte[] bytes = new byte[endIndex-startIndex+1];
-        if (littleEndian) {
-            for (int i = 0; i <= endIndex-startIndex; i++) {
-                bytes[i] = byteBuffer[startIndex+bytes.length-1-i];
+    /**
+     * Advances the cursor to the next manufacturer or service data PDU and records its bounds in
+     * the buffer.  Records may hold several of these, for example more than one service data
+     * structure, so a parser that does not match one PDU should try the next.
+     */
+    static boolean nextPduToParse(AdStructureCursor cursor, DecodeBuffer target) {
+        while (cursor.next()) {
+            byte type = cursor.getType();
+            if (type == Pdu.GATT_SERVICE_UUID_PDU_TYPE || type == Pdu.MANUFACTURER_DATA_PDU_TYPE) {
+                target.mPduType = type;
+                target.mPduStartIndex = cursor.getStartIndex();
+                target.mPduEndIndex = cursor.getEndIndex();
+                return true;
             }
-        }
-        else {
-            for (int i = 0; i <= endIndex-startIndex; i++) {
-                bytes[i] = byteBuffer[startIndex+i];
+            if (LogManager.isVerboseLoggingEnabled()) {
+                LogManager.d(TAG, "Ignoring pdu type %02X", type);
             }
         }
+        return false;
+    }
+
+    /**
+     * Reads an unsigned value from an inclusive byte range.  Bytes past the end of the array read
+     * as zero, which is equivalent to zero padding the advertisement out to the layout size.
+     */
+    private static long readUnsigned(byte[] bytes, int startIndex, int endIndex, boolean littleEndian) {
+        long number = 0l;
+        for (int i = startIndex; i <= endIndex; i++) {
+            int index = littleEndian ? endIndex - (i - startIndex) : i;
+            int byteValue = index < bytes.length ? bytes[index] & 0xff : 0;
+            number = (number << 8) | byteValue;
+        }
+        return number;
+    }
+
+    CompiledLayout getCompiledLayout() {
+        return mCompiledLayout;
+    }
 
+    private void compileLayout() {
+        if (mMatchingBeaconTypeCode == null || mMatchingBeaconTypeCodeStartOffset == null
+                || mMatchingBeaconTypeCodeEndOffset == null) {
+            mCompiledLayout = null;
+            return;
+        }
+        mCompiledLayout = new CompiledLayout(this);
+    }
 
-        int length = endIndex-startIndex +1;
-        // We treat a 1-4 byte number as decimal string
-        if (length < 5) {
-            long number = 0l;
-            for (int i = 0; i < bytes.length; i++)  {
-                long byteValue = (long) (bytes[bytes.length - i-1] & 0xff);
-                long positionValue = (long) Math.pow(256.0,i*1.0);
-                long calculatedValue =  (byteValue * positionValue);
-                number += calculatedValue;
+    /**
+     * Immutable snapshot of the layout in primitive form, so the per-packet decode does no
+     * boxing, list lookups or byte array conversions.  Rebuilt whenever the layout changes.
+     */
+    static final class CompiledLayout {
+        final int[] identifierStartOffsets;
+        final int[] identifierEndOffsets;
+        final boolean[] identifierLittleEndianFlags;
+        final boolean[] identifierVariableLengthFlags;
+        final int[] dataStartOffsets;
+        final int[] dataEndOffsets;
+        final boolean[] dataLittleEndianFlags;
+        final int typeCodeStartOffset;
+        final int typeCodeEndOffset;
+        final byte[] typeCodeBytes;
+        final int serviceUuidStartOffset;
+        final byte[] serviceUuidBytes;
+        final int serviceUuid;
+        final boolean hasPower;
+        final int powerStartOffset;
+        final int powerEndOffset;
+        final int powerCorrection;
+
+        CompiledLayout(BeaconParser parser) {
+            identifierStartOffsets = toIntArray(parser.mIdentifierStartOffsets);
+            identifierEndOffsets = toIntArray(parser.mIdentifierEndOffsets);
+            identifierLittleEndianFlags = toBooleanArray(parser.mIdentifierLittleEndianFlags, identifierStartOffsets.length);
+            identifierVariableLengthFlags = toBooleanArray(parser.mIdentifierVariableLengthFlags, identifierStartOffsets.length);
+            dataStartOffsets = toIntArray(parser.mDataStartOffsets);
+            dataEndOffsets = toIntArray(parser.mDataEndOffsets);
+            dataLittleEndianFlags = toBooleanArray(parser.mDataLittleEndianFlags, dataStartOffsets.length);
+            typeCodeStartOffset = parser.mMatchingBeaconTypeCodeStartOffset;
+            typeCodeEndOffset = parser.mMatchingBeaconTypeCodeEndOffset;
+            typeCodeBytes = longToByteArray(parser.mMatchingBeaconTypeCode, typeCodeEndOffset - typeCodeStartOffset + 1);
+            if (parser.mServiceUuid != null) {
+                serviceUuidStartOffset = parser.mServiceUuidStartOffset;
+                serviceUuidBytes = longToByteArray(parser.mServiceUuid, parser.mServiceUuidEndOffset - serviceUuidStartOffset + 1, false);
+                serviceUuid = (int) parser.mServiceUuid.longValue();
             }
-            return Long.toString(number);
+            else {
+                serviceUuidStartOffset = 0;
+                serviceUuidBytes = null;
+                serviceUuid = -1;
+            }
+            hasPower = parser.mPowerStartOffset != null && parser.mPowerEndOffset != null;
+            powerStartOffset = hasPower ? parser.mPowerStartOffset : 0;
+            powerEndOffset = hasPower ? parser.mPowerEndOffset : 0;
+            powerCorrection = parser.mDBmCorrection == null ? 0 : parser.mDBmCorrection;
         }
 
-        // We treat a 7+ byte number as a hex string
-        String hexString = bytesToHex(bytes);
+        boolean matches(byte[] bytes, int startByte) {
+            if (serviceUuidBytes != null && !regionMatches(bytes, startByte + serviceUuidStartOffset, serviceUuidBytes)) {
+                return false;
+            }
+            return regionMatches(bytes, startByte + typeCodeStartOffset, typeCodeBytes);
+        }
 
-        // And if it is a 12 byte number we add dashes to it to make it look like a standard UUID
-        if (bytes.length == 16) {
-            StringBuilder sb = new StringBuilder();
-            sb.append(hexString.substring(0,8));
-            sb.append("-");
-            sb.append(hexString.substring(8,12));
-            sb.append("-");
-            sb.append(hexString.substring(12,16));
-            sb.append("-");
-            sb.append(hexString.substring(16,20));
-            sb.append("-");
-            sb.append(hexString.substring(20,32));
-            return sb.toString();
+        private static boolean regionMatches(byte[] bytes, int offset, byte[] expected) {
+            if (offset + expected.length > bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (bytes[offset + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
-        return "0x"+hexString;
-    }
 
-    @TargetApi(Build.VERSION_CODES.GINGERBREAD)
-    private byte[] ensureMaxSize(byte[] array, int requiredLength) {
-        if (array.length >= requiredLength) {
+        private static int[] toIntArray(List<Integer> values) {
+            int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+
+        private static boolean[] toBooleanArray(List<Boolean> values, int length) {
+            boolean[] array = new boolean[length];
+            for (int i = 0; i < length && i < values.size(); i++) {
+                array[i] = values.get(i);
+            }
             return array;
         }
-        return Arrays.copyOf(array, requiredLength);
     }
 
+    /**
+     * Reusable holder for the result of {@link BeaconParser#decode(byte[], DecodeBuffer)}.
+     * Identifier fields are kept as offsets into the scanned bytes, so nothing is copied until a
+     * <code>Beacon</code> is actually built.  The buffer references the scanned byte array, so it
+     * must not be read after that array is modified.  Instances are not thread safe.
+     */
+    public static class DecodeBuffer {
+        private byte[] mBytes;
+        private boolean mMatched;
+        private byte mPduType;
+        private int mPduStartIndex;
+        private int mPduEndIndex;
+        private int mIdentifierCount;
+        private int[] mIdentifierStartIndexes = new int[4];
+        private int[] mIdentifierEndIndexes = new int[4];
+        private boolean[] mIdentifierLittleEndianFlags = new boolean[4];
+        private int mDataFieldCount;
+        private long[] mDataFields = new long[4];
+        private boolean mHasTxPower;
+        private int mTxPower;
+        private int mBeaconTypeCode;
+        private int mManufacturer;
+        private int mServiceUuid;
+        private final AdStructureCursor mCursor = new AdStructureCursor();
+
+        AdStructureCursor startPdus(byte[] bytes) {
+            return mCursor.reset(bytes);
+        }
+
+        /**
+         * Makes the PDU bounds current again, after another PDU of the same packet was tried
+         */
+        void setPdu(byte type, int startIndex, int endIndex) {
+            mPduType = type;
+            mPduStartIndex = startIndex;
+            mPduEndIndex = endIndex;
+        }
+
+        private void ensureCapacity(int identifierCount, int dataFieldCount) {
+            if (mIdentifierStartIndexes.length < identifierCount) {
+                mIdentifierStartIndexes = new int[identifierCount];
+                mIdentifierEndIndexes = new int[identifierCount];
+                mIdentifierLittleEndianFlags = new boolean[identifierCount];
+            }
+            if (mDataFields.length < dataFieldCount) {
+                mDataFields = new long[dataFieldCount];
+            }
+        }
+
+        public boolean isMatched() {
+            return mMatched;
+        }
+
+        public byte getPduType() {
+            return mPduType;
+        }
+
+        public int getPduStartIndex() {
+            return mPduStartIndex;
+        }
+
+        public int getPduEndIndex() {
+            return mPduEndIndex;
+        }
+
+        public int getIdentifierCount() {
+            return mIdentifierCount;
+        }
+
+        public int getDataFieldCount() {
+            return mDataFieldCount;
+        }
+
+        public long getDataField(int i) {
+            return mDataFields[i];
+        }
+
+        public int getBeaconTypeCode() {
+            return mBeaconTypeCode;
+        }
 
+        public int getManufacturer() {
+            return mManufacturer;
+        }
+
+        public int getServiceUuid() {
+            return mServiceUuid;
+        }
+
+        /**
+         * Copies the identifier out of the scanned bytes, or returns the pooled instance when the
+         * shared {@link IdentifierPool} is enabled.  Bytes past the end of the advertisement read
+         * as zero.
+         */
+        public Identifier identifier(int i) {
+            int start = mIdentifierStartIndexes[i];
+            IdentifierPool pool = IdentifierPool.getSharedPool();
+            if (pool != null) {
+                return pool.intern(mBytes, start, mIdentifierEndIndexes[i], mIdentifierLittleEndianFlags[i]);
+            }
+            int length = mIdentifierEndIndexes[i] - start;
+            byte[] value = new byte[length];
+            int available = Math.max(0, Math.min(length, mBytes.length - start));
+            System.arraycopy(mBytes, start, value, 0, available);
+            if (mIdentifierLittleEndianFlags[i]) {
+                for (int j = 0; j < length / 2; j++) {
+                    byte temp = value[j];
+                    value[j] = value[length - j - 1];
+                    value[length - j - 1] = temp;
+                }
+            }
+            return new Identifier(value);
+        }
+    }
 }
@@ -0,0 +1,392 @@
+/**
+ * Radius Networks, Inc.
+ * http://www.radiusnetworks.com
+ *
+ * @author David G. Young
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.altbeacon.beacon;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.altbeacon.beacon.logging.LogManager;
+import org.altbeacon.bluetooth.AdStructureCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Dispatches raw BLE packets to the <code>BeaconParser</code> instances that can possibly match
+ * them, instead of trying every registered parser in turn.
+ *
+ * Parsers are indexed by the bytes their layout matches on: the service UUID (for GATT based
+ * layouts) and the beacon type code.  Layouts that look for these at the same offsets share an
+ * index, so a packet costs one walk of its AD structures plus one binary search per distinct
+ * offset combination, no matter how many layouts are registered.  When several parsers could
+ * match a packet, the one registered first wins, just as when the parsers are tried in order.
+ *
+ * A registry is a snapshot of the parser list and layouts at the time it was built.  Use
+ * {@link #isCurrent(List)} to find out if it needs to be rebuilt.
+ */
+public class BeaconParserRegistry {
+    private static final String TAG = "BeaconParserRegistry";
+
+    private static final ThreadLocal<BeaconParser.DecodeBuffer> sDecodeBuffers = new ThreadLocal<BeaconParser.DecodeBuffer>() {
+        @Override
+        protected BeaconParser.DecodeBuffer initialValue() {
+            return new BeaconParser.DecodeBuffer();
+        }
+    };
+
+    private final BeaconParser[] mParsers;
+    private final BeaconParser.CompiledLayout[] mLayouts;
+    private final Group[] mGroups;
+    private final int[] mUnindexedParsers;
+
+    /**
+     * Builds a registry for the parsers in the list, preserving their order
+     * @param parsers
+     */
+    public BeaconParserRegistry(List<BeaconParser> parsers) {
+        mParsers = parsers.toArray(new BeaconParser[0]);
+        mLayouts = new BeaconParser.CompiledLayout[mParsers.length];
+        List<GroupBuilder> builders = new ArrayList<GroupBuilder>();
+        List<Integer> unindexed = new ArrayList<Integer>();
+        for (int i = 0; i < mParsers.length; i++) {
+            BeaconParser parser = mParsers[i];
+            mLayouts[i] = parser.getCompiledLayout();
+            if (overridesFromScanData(parser)) {
+                // We cannot know what a custom implementation matches on, so always try it
+                unindexed.add(i);
+                continue;
+            }
+            if (mLayouts[i] == null) {
+                // a parser without a complete layout never matches anything
+                continue;
+            }
+            GroupBuilder builder = null;
+            for (GroupBuilder candidate : builders) {
+                if (candidate.accepts(mLayouts[i])) {
+                    builder = candidate;
+                    break;
+                }
+            }
+            if (builder == null) {
+                builder = new GroupBuilder(mLayouts[i]);
+                builders.add(builder);
+            }
+            builder.add(mLayouts[i], i);
+        }
+        mGroups = new Group[builders.size()];
+        for (int i = 0; i < mGroups.length; i++) {
+            mGroups[i] = builders.get(i).build();
+        }
+        mUnindexedParsers = new int[unindexed.size()];
+        for (int i = 0; i < mUnindexedParsers.length; i++) {
+            mUnindexedParsers[i] = unindexed.get(i);
+        }
+        LogManager.d(TAG, "Indexed %d beacon parsers into %d groups", mParsers.length, mGroups.length);
+    }
+
+    /**
+     * @return the number of parsers in this registry
+     */
+    public int size() {
+        return mParsers.length;
+    }
+
+    /**
+     * Checks whether this registry still reflects the list of parsers and their layouts.  This
+     * only compares references, so it is cheap enough to call once per scan cycle.
+     * @param parsers
+     * @return true if the list holds the same parsers, in the same order, with unchanged layouts
+     */
+    public boolean isCurrent(List<BeaconParser> parsers) {
+        if (parsers.size() != mParsers.length) {
+            return false;
+        }
+        int i = 0;
+        for (BeaconParser parser : parsers) {
+            if (i >= mParsers.length || parser != mParsers[i] || parser.getCompiledLayout() != mLayouts[i]) {
+                return false;
+            }
+            i++;
+        }
+        return i == mParsers.length;
+    }
+
+    /**
+     * Construct a Beacon from a Bluetooth LE packet using the first registered parser that
+     * matches it.
+     *
+     * @param scanData The actual packet bytes
+     * @param rssi The measured signal strength of the packet
+     * @param device The Bluetooth device that was detected
+     * @return An instance of a <code>Beacon</code>, or null if no parser matches
+     */
+    public Beacon fromScanData(byte[] scanData, int rssi, BluetoothDevice device) {
+        BeaconParser.DecodeBuffer decoded = sDecodeBuffers.get();
+        int parserIndex = findParserIndex(scanData, decoded);
+        for (int unindexed : mUnindexedParsers) {
+            if (unindexed > parserIndex) {
+                break;
+            }
+            Beacon beacon = mParsers[unindexed].fromScanData(scanData, rssi, device);
+            if (beacon != null) {
+                return beacon;
+            }
+        }
+        if (parserIndex == Integer.MAX_VALUE) {
+            return null;
+        }
+        return mParsers[parserIndex].fromDecodeBuffer(decoded, rssi, device);
+    }
+
+    /**
+     * Constructs Beacons from a batch of Bluetooth LE packets, using the first registered parser
+     * that matches each one.
+     *
+     * @param scanRecords The actual packet bytes
+     * @param rssis The measured signal strength of each packet
+     * @param devices The Bluetooth device that sent each packet
+     * @param count the number of valid entries in the arrays
+     * @param results receives a Beacon, or null, for each packet
+     * @return the number of packets that were matched
+     */
+    public int fromScanData(byte[][] scanRecords, int[] rssis, BluetoothDevice[] devices, int count, Beacon[] results) {
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            results[i] = fromScanData(scanRecords[i], rssis[i], devices[i]);
+            if (results[i] != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Decodes the packet with the first indexed parser that matches it.  Parsers that override
+     * <code>fromScanData</code> are not considered here.
+     *
+     * @param scanData The actual packet bytes
+     * @param target buffer that receives the decoded fields
+     * @return the matching parser, or null if no parser matches
+     */
+    public BeaconParser findParser(byte[] scanData, BeaconParser.DecodeBuffer target) {
+        int parserIndex = findParserIndex(scanData, target);
+        return parserIndex == Integer.MAX_VALUE ? null : mParsers[parserIndex];
+    }
+
+    private int findParserIndex(byte[] scanData, BeaconParser.DecodeBuffer target) {
+        if (scanData == null || mGroups.length == 0) {
+            return Integer.MAX_VALUE;
+        }
+        // A parser tries every PDU of the packet before the next parser is tried, so the lowest
+        // parser index matching any PDU wins, and for that parser its first matching PDU
+        AdStructureCursor cursor = target.startPdus(scanData);
+        int bestIndex = Integer.MAX_VALUE;
+        byte bestType = 0;
+        int bestStartIndex = 0;
+        int bestEndIndex = 0;
+        boolean bufferHoldsBest = false;
+        while (bestIndex > 0 && BeaconParser.nextPduToParse(cursor, target)) {
+            int startByte = target.getPduStartIndex();
+            for (Group group : mGroups) {
+                int[] candidates = group.candidates(scanData, startByte);
+                if (candidates == null) {
+                    continue;
+                }
+                for (int candidate : candidates) {
+                    if (candidate >= bestIndex) {
+                        break;
+                    }
+                    bufferHoldsBest = false;
+                    if (mParsers[candidate].decodePdu(scanData, target)) {
+                        bestIndex = candidate;
+                        bestType = target.getPduType();
+                        bestStartIndex = startByte;
+                        bestEndIndex = target.getPduEndIndex();
+                        bufferHoldsBest = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if (bestIndex != Integer.MAX_VALUE) {
+            // Moving on to later PDUs replaced the bounds in the buffer
+            target.setPdu(bestType, bestStartIndex, bestEndIndex);
+            if (!bufferHoldsBest) {
+                // A later attempt overwrote the decoded fields, so decode the winner again
+                mParsers[bestIndex].decodePdu(scanData, target);
+            }
+        }
+        return bestIndex;
+    }
+
+    private static boolean overridesFromScanData(BeaconParser parser) {
+        try {
+            return parser.getClass().getMethod("fromScanData", byte[].class, int.class,
+                    BluetoothDevice.class).getDeclaringClass() != BeaconParser.class;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean inRange(byte[] bytes, int offset, int length) {
+        return offset >= 0 && offset + length <= bytes.length;
+    }
+
+    private static long readKey(byte[] bytes, int offset, int length) {
+        long key = 0l;
+        for (int i = 0; i < length; i++) {
+            key = (key << 8) | (bytes[offset + i] & 0xff);
+        }
+        return key;
+    }
+
+    /**
+     * Parsers whose layouts read the service UUID and type code from the same offsets, sorted by
+     * the values they match.
+     */
+    private static final class Group {
+        final int typeCodeOffset;
+        final int typeCodeLength;
+        final int serviceUuidOffset;
+        final int serviceUuidLength;
+        final long[] serviceUuidKeys;
+        final long[] typeCodeKeys;
+        final int[][] parserIndexes;
+
+        Group(int typeCodeOffset, int typeCodeLength, int serviceUuidOffset, int serviceUuidLength,
+              long[] serviceUuidKeys, long[] typeCodeKeys, int[][] parserIndexes) {
+            this.typeCodeOffset = typeCodeOffset;
+            this.typeCodeLength = typeCodeLength;
+            this.serviceUuidOffset = serviceUuidOffset;
+            this.serviceUuidLength = serviceUuidLength;
+            this.serviceUuidKeys = serviceUuidKeys;
+            this.typeCodeKeys = typeCodeKeys;
+            this.parserIndexes = parserIndexes;
+        }
+
+        int[] candidates(byte[] bytes, int startByte) {
+            int typeCodeStart = startByte + typeCodeOffset;
+            int serviceUuidStart = startByte + serviceUuidOffset;
+            if (!inRange(bytes, typeCodeStart, typeCodeLength) || !inRange(bytes, serviceUuidStart, serviceUuidLength)) {
+                return null;
+            }
+            long serviceUuidKey = readKey(bytes, serviceUuidStart, serviceUuidLength);
+            long typeCodeKey = readKey(bytes, typeCodeStart, typeCodeLength);
+            int low = 0;
+            int high = typeCodeKeys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int comparison = compare(serviceUuidKeys[mid], typeCodeKeys[mid], serviceUuidKey, typeCodeKey);
+                if (comparison < 0) {
+                    low = mid + 1;
+                }
+                else if (comparison > 0) {
+                    high = mid - 1;
+                }
+                else {
+                    return parserIndexes[mid];
+                }
+            }
+            return null;
+        }
+
+        static int compare(long serviceUuid1, long typeCode1, long serviceUuid2, long typeCode2) {
+            if (serviceUuid1 != serviceUuid2) {
+                return serviceUuid1 < serviceUuid2 ? -1 : 1;
+            }
+            if (typeCode1 != typeCode2) {
+                return typeCode1 < typeCode2 ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    private static final class GroupBuilder {
+        final int typeCodeOffset;
+        final int typeCodeLength;
+        final int serviceUuidOffset;
+        final int serviceUuidLength;
+        final List<long[]> entries = new ArrayList<long[]>();
+
+        GroupBuilder(BeaconParser.CompiledLayout layout) {
+            typeCodeOffset = layout.typeCodeStartOffset;
+            typeCodeLength = layout.typeCodeBytes.length;
+            serviceUuidOffset = layout.serviceUuidBytes == null ? 0 : layout.serviceUuidStartOffset;
+            serviceUuidLength = layout.serviceUuidBytes == null ? 0 : layout.serviceUuidBytes.length;
+        }
+
+        boolean accepts(BeaconParser.CompiledLayout layout) {
+            if (layout.typeCodeStartOffset != typeCodeOffset || layout.typeCodeBytes.length != typeCodeLength) {
+                return false;
+            }
+            if (layout.serviceUuidBytes == null) {
+                return serviceUuidLength == 0;
+            }
+            return layout.serviceUuidStartOffset == serviceUuidOffset && layout.serviceUuidBytes.length == serviceUuidLength;
+        }
+
+        void add(BeaconParser.CompiledLayout layout, int parserIndex) {
+            long serviceUuidKey = layout.serviceUuidBytes == null ? 0l : readKey(layout.serviceUuidBytes, 0, serviceUuidLength);
+            long typeCodeKey = readKey(layout.typeCodeBytes, 0, typeCodeLength);
+            entries.add(new long[] { serviceUuidKey, typeCodeKey, parserIndex });
+        }
+
+        Group build() {
+            // Stable sort by key keeps parsers with the same key in registration order
+            List<long[]> sorted = new ArrayList<long[]>(entries);
+            Collections.sort(sorted, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] lhs, long[] rhs) {
+                    return Group.compare(lhs[0], lhs[1], rhs[0], rhs[1]);
+                }
+            });
+            List<long[]> keys = new ArrayList<long[]>();
+            List<int[]> parserIndexes = new ArrayList<int[]>();
+            int i = 0;
+            while (i < sorted.size()) {
+                int j = i;
+                while (j < sorted.size() && Group.compare(sorted.get(i)[0], sorted.get(i)[1], sorted.get(j)[0], sorted.get(j)[1]) == 0) {
+                    j++;
+                }
+                int[] indexes = new int[j - i];
+                for (int k = i; k < j; k++) {
+                    indexes[k - i] = (int) sorted.get(k)[2];
+                }
+                keys.add(sorted.get(i));
+                parserIndexes.add(indexes);
+                i = j;
+            }
+            long[] serviceUuidKeys = new long[keys.size()];
+            long[] typeCodeKeys = new long[keys.size()];
+            for (int k = 0; k < keys.size(); k++) {
+                serviceUuidKeys[k] = keys.get(k)[0];
+                typeCodeKeys[k] = keys.get(k)[1];
+            }
+            return new Group(typeCodeOffset, typeCodeLength, serviceUuidOffset, serviceUuidLength,
+                    serviceUuidKeys, typeCodeKeys, parserIndexes.toArray(new int[0][]));
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/**
+ * Radius Networks, Inc.
+ * http://www.radiusnetworks.com
+ *
+ * @author David G. Young
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.altbeacon.beacon;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of beacons, regions and identifiers for parcels.
+ *
+ * Parcels store every int in four bytes and every string as UTF-16, and identifiers used to be
+ * sent as strings and parsed again on arrival.  This encoding writes identifiers as their raw
+ * bytes, integers as variable length integers, and Bluetooth addresses as six bytes.  A list of
+ * beacons can share one dictionary of identifiers, so the proximity UUID that every beacon in a
+ * venue has in common is written once.
+ *
+ * Every encoded block starts with a format version, so a block written by a newer library is
+ * rejected instead of misread.
+ */
+public final class CompactParcel {
+    /** Version of the format written by this class */
+    public static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int TYPE_BEACON = 0;
+    private static final int TYPE_ALT_BEACON = 1;
+
+    private static final int ADDRESS_NULL = 0;
+    private static final int ADDRESS_PACKED = 1;
+    private static final int ADDRESS_STRING = 2;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private CompactParcel() {
+    }
+
+    /**
+     * @return true if every beacon is of a class this encoding can recreate.  Other subclasses must
+     * be sent as parcelables so their own fields survive.
+     */
+    public static boolean canEncode(Collection<Beacon> beacons) {
+        for (Beacon beacon : beacons) {
+            if (beacon.getClass() != Beacon.class && beacon.getClass() != AltBeacon.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes beacons with a shared identifier dictionary.  Only classes accepted by
+     * {@link #canEncode(Collection)} may be passed.
+     */
+    public static byte[] encodeBeacons(Collection<Beacon> beacons) {
+        Map<Identifier, Integer> dictionary = new HashMap<Identifier, Integer>();
+        List<Identifier> entries = new ArrayList<Identifier>();
+        for (Beacon beacon : beacons) {
+            for (Identifier identifier : beacon.mIdentifiers) {
+                if (identifier != null && !dictionary.containsKey(identifier)) {
+                    dictionary.put(identifier, entries.size());
+                    entries.add(identifier);
+                }
+            }
+        }
+        Output out = new Output(16 + beacons.size() * 48);
+        out.writeVarint(VERSION);
+        out.writeVarint(entries.size());
+        for (Identifier identifier : entries) {
+            out.writeBytes(identifier.toByteArray());
+        }
+        out.writeVarint(beacons.size());
+        for (Beacon beacon : beacons) {
+            out.writeVarint(beacon.getClass() == AltBeacon.class ? TYPE_ALT_BEACON : TYPE_BEACON);
+            beacon.writeCompact(out, dictionary);
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Beacon> decodeBeacons(byte[] bytes) {
+        Input in = new Input(bytes);
+        checkVersion(in);
+        int dictionarySize = in.readCount();
+        List<Identifier> dictionary = new ArrayList<Identifier>(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary.add(in.readIdentifier());
+        }
+        int count = in.readCount();
+        List<Beacon> beacons = new ArrayList<Beacon>(count);
+        for (int i = 0; i < count; i++) {
+            Beacon beacon = in.readVarint() == TYPE_ALT_BEACON ? new AltBeacon() : new Beacon();
+            beacon.readCompact(in, dictionary);
+            beacons.add(beacon);
+        }
+        return beacons;
+    }
+
+    /**
+     * Encodes a single beacon, without a dictionary
+     */
+    static byte[] encodeBeacon(Beacon beacon) {
+        Output out = new Output(64);
+        out.writeVarint(VERSION);
+        beacon.writeCompact(out, null);
+        return out.toByteArray();
+    }
+
+    static void decodeBeacon(byte[] bytes, Beacon beacon) {
+        Input in = new Input(bytes);
+        checkVersion(in);
+        beacon.readCompact(in, null);
+    }
+
+    // Only addresses that unpack to the identical string are packed
+    private static boolean isPackableAddress(String address) {
+        if (address.length() != 17) {
+            return false;
+        }
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            boolean valid = i % 3 == 2 ? c == ':' : (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F');
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void checkVersion(Input in) {
+        long version = in.readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported compact parcel version " + version);
+        }
+    }
+
+    /**
+     * Growable output buffer
+     */
+    static final class Output {
+        private byte[] mBuffer;
+        private int mSize;
+
+        Output(int capacity) {
+            mBuffer = new byte[Math.max(16, capacity)];
+        }
+
+        void writeByte(int value) {
+            if (mSize == mBuffer.length) {
+                byte[] buffer = new byte[mBuffer.length * 2];
+                System.arraycopy(mBuffer, 0, buffer, 0, mSize);
+                mBuffer = buffer;
+            }
+            mBuffer[mSize++] = (byte) value;
+        }
+
+        /**
+         * Writes an unsigned value in seven bit groups, low group first
+         */
+        void writeVarint(long value) {
+            while ((value & ~0x7fl) != 0) {
+                writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        /**
+         * Writes a signed value so that small negative numbers stay short
+         */
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (bits >>> shift));
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            for (byte value : bytes) {
+                writeByte(value);
+            }
+        }
+
+        /**
+         * Writes a nullable string as its length plus one, zero meaning null, then UTF-8 bytes
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(bytes.length + 1);
+            for (byte b : bytes) {
+                writeByte(b);
+            }
+        }
+
+        /**
+         * Writes a nullable identifier, as a dictionary reference if a dictionary is given
+         */
+        void writeIdentifier(Identifier identifier, Map<Identifier, Integer> dictionary) {
+            if (identifier == null) {
+                writeVarint(0);
+            }
+            else if (dictionary != null) {
+                writeVarint(dictionary.get(identifier) + 1);
+            }
+            else {
+                byte[] bytes = identifier.toByteArray();
+                writeVarint(bytes.length + 1);
+                for (byte b : bytes) {
+                    writeByte(b);
+                }
+            }
+        }
+
+        /**
+         * Writes a nullable Bluetooth address, as six bytes if it is in the usual upper case form
+         */
+        void writeAddress(String address) {
+            if (address == null) {
+                writeVarint(ADDRESS_NULL);
+            }
+            else if (isPackableAddress(address)) {
+                writeVarint(ADDRESS_PACKED);
+                for (int i = 0; i < 6; i++) {
+                    writeByte(Integer.parseInt(address.substring(i * 3, i * 3 + 2), 16));
+                }
+            }
+            else {
+                writeVarint(ADDRESS_STRING);
+                writeString(address);
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[mSize];
+            System.arraycopy(mBuffer, 0, bytes, 0, mSize);
+            return bytes;
+        }
+    }
+
+    /**
+     * Reader for blocks written with {@link Output}
+     */
+    static final class Input {
+        private final byte[] mBytes;
+        private int mPosition;
+
+        Input(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        int readByte() {
+            if (mPosition >= mBytes.length) {
+                throw new IllegalArgumentException("Truncated compact parcel");
+            }
+            return mBytes[mPosition++] & 0xff;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in compact parcel");
+        }
+
+        long readSignedVarint() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a count, checking that it cannot exceed the remaining bytes
+         */
+        int readCount() {
+            long count = readVarint();
+            if (count > mBytes.length - mPosition) {
+                throw new IllegalArgumentException("Invalid count in compact parcel");
+            }
+            return (int) count;
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | readByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        byte[] readBytes(int length) {
+            checkLength(length);
+            byte[] bytes = new byte[length];
+            System.arraycopy(mBytes, mPosition, bytes, 0, length);
+            mPosition += length;
+            return bytes;
+        }
+
+        // Unparcelled identifiers go through the shared pool like parsed ones, so the client side
+        // gets the same canonical instances
+        Identifier readIdentifier() {
+            return Identifier.intern(new Identifier(readBytes(readCount())));
+        }
+
+        String readString() {
+            long length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            return new String(readBytes(checkLength(length - 1)), UTF_8);
+        }
+
+        Identifier readIdentifier(List<Identifier> dictionary) {
+            long reference = readVarint();
+            if (reference == 0) {
+                return null;
+            }
+            if (dictionary != null) {
+                if (reference > dictionary.size()) {
+                    throw new IllegalArgumentException("Invalid identifier reference in compact parcel");
+                }
+                return dictionary.get((int) reference - 1);
+            }
+            return Identifier.intern(new Identifier(readBytes(checkLength(reference - 1))));
+        }
+
+        String readAddress() {
+            long form = readVarint();
+            if (form == ADDRESS_NULL) {
+                return null;
+            }
+            if (form == ADDRESS_PACKED) {
+                char[] chars = new char[17];
+                for (int i = 0; i < 6; i++) {
+                    int b = readByte();
+                    chars[i * 3] = HEX_DIGITS[b >>> 4];
+                    chars[i * 3 + 1] = HEX_DIGITS[b & 0x0f];
+                    if (i < 5) {
+                        chars[i * 3 + 2] = ':';
+                    }
+                }
+                return new String(chars);
+            }
+            return readString();
+        }
+
+        private int checkLength(long length) {
+            if (length > mBytes.length - mPosition) {
+                throw new IllegalArgumentException("Truncated compact parcel");
+            }
+            return (int) length;
+        }
+    }
+}
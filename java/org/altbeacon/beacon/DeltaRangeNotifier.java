@@ -0,0 +1,47 @@
+/**
+ * Radius Networks, Inc.
+ * http://www.radiusnetworks.com
+ *
+ * @author David G. Young
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.altbeacon.beacon;
+
+import java.util.Collection;
+
+/**
+ * This interface is implemented by classes that receive only the changes in the ranged beacons
+ * of a region, when delta ranging is enabled
+ *
+ * @see BeaconManager#setDeltaRangeNotifier(DeltaRangeNotifier notifier)
+ * @see BeaconManager#setDeltaRangingEnabled(boolean enabled)
+ */
+public interface DeltaRangeNotifier {
+    /**
+     * Called after a scan cycle in which the ranged beacons of a region changed.  Cycles without
+     * changes are not reported.
+     * @param entered beacons that are newly ranged
+     * @param changed beacons whose running average RSSI or distance moved beyond the thresholds
+     *                since last reported
+     * @param left beacons that are no longer ranged
+     * @param region the <code>Region</code> object that defines the criteria for the ranged beacons
+     */
+    public void didRangeBeaconChangesInRegion(Collection<Beacon> entered, Collection<Beacon> changed,
+                                              Collection<Beacon> left, Region region);
+}
@@ -4,7 +4,6 @@ import android.annotation.TargetApi;
 import android.os.Build;
 
 import java.nio.ByteBuffer;
-import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.UUID;
 import java.util.regex.Pattern;
@@ -26,6 +25,9 @@ public class Identifier implements Comparable<Identifier> {
     private static final int MAX_INTEGER = 65535;
 
     private final byte[] mValue;
+    private int mHashCode;
+    private long mFingerprint;
+    private String mStringValue;
 
     /**
      * Takes the passed string and tries to figure out what format it is in.
@@ -115,7 +117,7 @@ public class Identifier implements Comparable<Identifier> {
         for (int i = 0; i < result.length; i++) {
             result[i] = (byte)(Integer.parseInt(str.substring(i * 2, i * 2 + 2), 16) & 0xFF);
         }
-        return new Identifier(result);
+        return intern(new Identifier(result));
     }
 
     /**
@@ -133,7 +135,7 @@ public class Identifier implements Comparable<Identifier> {
             newValue[i] = (byte) (longValue & 0xff);
             longValue = longValue >> 8;
         }
-        return new Identifier(newValue);
+        return intern(new Identifier(newValue));
     }
 
     /**
@@ -151,7 +153,7 @@ public class Identifier implements Comparable<Identifier> {
         newValue[0] = (byte) (intValue >> 8);
         newValue[1] = (byte) (intValue);
 
-        return new Identifier(newValue);
+        return intern(new Identifier(newValue));
     }
 
     /**
@@ -184,7 +186,7 @@ public class Identifier implements Comparable<Identifier> {
         if (littleEndian) {
             reverseArray(byteRange);
         }
-        return new Identifier(byteRange);
+        return intern(new Identifier(byteRange));
     }
 
     /**
@@ -196,7 +198,12 @@ public class Identifier implements Comparable<Identifier> {
         ByteBuffer buf = ByteBuffer.allocate(16);
         buf.putLong(uuid.getMostSignificantBits());
         buf.putLong(uuid.getLeastSignificantBits());
-        return new Identifier(buf.array());
+        return intern(new Identifier(buf.array()));
+    }
+
+    static Identifier intern(Identifier identifier) {
+        IdentifierPool pool = IdentifierPool.getSharedPool();
+        return pool == null ? identifier : pool.intern(identifier);
     }
 
     /**
@@ -234,13 +241,22 @@ public class Identifier implements Comparable<Identifier> {
     public String toString() {
         // Note:  the toString() method is also used for serialization and deserialization.  So
         // toString() and parse() must always return objects that return true when you call equals()
-        if (mValue.length == 2) {
-            return Integer.toString(toInt());
-        }
-        if (mValue.length == 16) {
-            return toUuid().toString();
+        // The value is immutable, so the string is computed once and kept.  This matters most for
+        // interned instances, which are shared by every beacon seen with the same identifier.
+        String stringValue = mStringValue;
+        if (stringValue == null) {
+            if (mValue.length == 2) {
+                stringValue = Integer.toString(toInt());
+            }
+            else if (mValue.length == 16) {
+                stringValue = toUuid().toString();
+            }
+            else {
+                stringValue = toHexString();
+            }
+            mStringValue = stringValue;
         }
-        return toHexString();
+        return stringValue;
     }
 
     /**
@@ -296,7 +312,12 @@ public class Identifier implements Comparable<Identifier> {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(mValue);
+        int hashCode = mHashCode;
+        if (hashCode == 0) {
+            hashCode = Arrays.hashCode(mValue);
+            mHashCode = hashCode;
+        }
+        return hashCode;
     }
 
     /**
@@ -307,6 +328,9 @@ public class Identifier implements Comparable<Identifier> {
      */
     @Override
     public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
         if (!(that instanceof Identifier)) {
             return false;
         }
@@ -337,7 +361,10 @@ public class Identifier implements Comparable<Identifier> {
      */
     @Deprecated
     public String toUuidString() {
-        return toUuid().toString();
+        if (mValue.length != 16) {
+            throw new UnsupportedOperationException("Only Identifiers backed by a byte array with length of exactly 16 can be UUIDs.");
+        }
+        return toString();
     }
 
     /**
@@ -350,8 +377,7 @@ public class Identifier implements Comparable<Identifier> {
         if (mValue.length != 16) {
             throw new UnsupportedOperationException("Only Identifiers backed by a byte array with length of exactly 16 can be UUIDs.");
         }
-        LongBuffer buf = ByteBuffer.wrap(mValue).asLongBuffer();
-        return new UUID(buf.get(), buf.get());
+        return new UUID(readLong(0), readLong(8));
     }
 
     /**
@@ -364,6 +390,61 @@ public class Identifier implements Comparable<Identifier> {
         return mValue.clone();
     }
 
+    /**
+     * Reads eight bytes of the value, most significant first.  For a 16 byte UUID, offsets 0 and 8
+     * give the two halves, so UUIDs can be compared without copying them.
+     */
+    long readLong(int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            result = (result << 8) | (mValue[i] & 0xff);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a well mixed 64 bit hash of the value, used to fingerprint beacons
+     */
+    long fingerprint() {
+        long fingerprint = mFingerprint;
+        if (fingerprint == 0) {
+            long hash = 0xcbf29ce484222325l;
+            for (byte value : mValue) {
+                hash = (hash ^ (value & 0xff)) * 0x100000001b3l;
+            }
+            fingerprint = mix(hash ^ mValue.length);
+            mFingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdl;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53l;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Checks whether this Identifier holds the value of a range of bytes, without copying them.
+     * Bytes past the end of the array are treated as zero.
+     */
+    boolean hasValue(byte[] bytes, int start, int length, boolean littleEndian) {
+        if (mValue.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int index = littleEndian ? start + length - 1 - i : start + i;
+            byte value = index < bytes.length ? bytes[index] : 0;
+            if (mValue[i] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Compares two identifiers.
      * When the Identifiers don't have the same length, the Identifier having the shortest
@@ -0,0 +1,200 @@
+/**
+ * Radius Networks, Inc.
+ * http://www.radiusnetworks.com
+ *
+ * @author David G. Young
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.altbeacon.beacon;
+
+/**
+ * A bounded pool of canonical <code>Identifier</code> instances.
+ *
+ * A venue typically has one proximity UUID and a few hundred major and minor values, so once the
+ * pool is warm the parser hands out the same instances over and over instead of copying the
+ * identifier bytes for every packet.  Equal identifiers are then usually the same object, which
+ * makes <code>equals</code> a reference compare, and the cached string forms are shared.
+ *
+ * The pool is set associative: each identifier can only live in one of a small number of slots
+ * chosen by its hash, and the least recently used slot of the set is replaced on a miss.  This
+ * keeps the memory use fixed no matter how many distinct identifiers are seen.
+ *
+ * The shared pool is disabled by default.  Enable it with
+ * {@link BeaconManager#setIdentifierPoolCapacity(int)}.
+ */
+public class IdentifierPool {
+    private static final int WAYS = 4;
+
+    private static volatile IdentifierPool sSharedPool = null;
+
+    private final Identifier[] mEntries;
+    private final long[] mLastUsed;
+    private final int mSetMask;
+    private long mClock = 0;
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+    private int mSize = 0;
+
+    /**
+     * @param capacity the maximum number of identifiers kept.  It is rounded down to a multiple
+     *                 of the set size, with a minimum of one set.
+     */
+    public IdentifierPool(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        mSetMask = sets - 1;
+        mEntries = new Identifier[sets * WAYS];
+        mLastUsed = new long[sets * WAYS];
+    }
+
+    /**
+     * @return the pool used by the Identifier factory methods and the beacon parsers, or null if
+     * interning is disabled
+     */
+    public static IdentifierPool getSharedPool() {
+        return sSharedPool;
+    }
+
+    /**
+     * Replaces the shared pool with an empty one of the given capacity.
+     * @param capacity maximum number of identifiers, or 0 to disable interning
+     */
+    public static void setSharedPoolCapacity(int capacity) {
+        sSharedPool = capacity > 0 ? new IdentifierPool(capacity) : null;
+    }
+
+    /**
+     * Returns the canonical instance equal to the given identifier, adding it to the pool if no
+     * equal identifier is present.
+     * @param identifier
+     * @return the pooled instance
+     */
+    public synchronized Identifier intern(Identifier identifier) {
+        int set = setIndex(identifier.hashCode());
+        for (int slot = set; slot < set + WAYS; slot++) {
+            Identifier entry = mEntries[slot];
+            if (entry != null && entry.equals(identifier)) {
+                return hit(slot);
+            }
+        }
+        return miss(set, identifier);
+    }
+
+    /**
+     * Returns the canonical instance holding a range of bytes, creating one only if it is not
+     * already pooled.  Bytes past the end of the array are treated as zero.
+     * @param bytes array to read from
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @param littleEndian whether the bytes are ordered in little endian
+     * @return the pooled instance
+     */
+    public synchronized Identifier intern(byte[] bytes, int start, int end, boolean littleEndian) {
+        int length = end - start;
+        int set = setIndex(hashOf(bytes, start, length, littleEndian));
+        for (int slot = set; slot < set + WAYS; slot++) {
+            Identifier entry = mEntries[slot];
+            if (entry != null && entry.hasValue(bytes, start, length, littleEndian)) {
+                return hit(slot);
+            }
+        }
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            int index = littleEndian ? start + length - 1 - i : start + i;
+            value[i] = index < bytes.length ? bytes[index] : 0;
+        }
+        return miss(set, new Identifier(value));
+    }
+
+    /**
+     * @return the number of lookups that found a pooled instance
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of lookups that had to add a new instance
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the fraction of lookups that found a pooled instance, or 0 if there were none
+     */
+    public synchronized double getHitRate() {
+        long lookups = mHitCount + mMissCount;
+        return lookups == 0 ? 0.0 : mHitCount / (double) lookups;
+    }
+
+    /**
+     * @return the number of identifiers currently pooled
+     */
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return the maximum number of identifiers the pool can hold
+     */
+    public int getCapacity() {
+        return mEntries.length;
+    }
+
+    private int setIndex(int hashCode) {
+        // spread the high bits, since identifiers often differ only in their last bytes
+        int h = hashCode ^ (hashCode >>> 16);
+        return (h & mSetMask) * WAYS;
+    }
+
+    private Identifier hit(int slot) {
+        mHitCount++;
+        mLastUsed[slot] = ++mClock;
+        return mEntries[slot];
+    }
+
+    private Identifier miss(int set, Identifier identifier) {
+        mMissCount++;
+        int victim = set;
+        for (int slot = set; slot < set + WAYS; slot++) {
+            if (mEntries[slot] == null) {
+                victim = slot;
+                mSize++;
+                break;
+            }
+            if (mLastUsed[slot] < mLastUsed[victim]) {
+                victim = slot;
+            }
+        }
+        mEntries[victim] = identifier;
+        mLastUsed[victim] = ++mClock;
+        return identifier;
+    }
+
+    // Same result as Arrays.hashCode on the copied value, so both intern methods agree
+    private static int hashOf(byte[] bytes, int start, int length, boolean littleEndian) {
+        int result = 1;
+        for (int i = 0; i < length; i++) {
+            int index = littleEndian ? start + length - 1 - i : start + i;
+            byte value = index < bytes.length ? bytes[index] : 0;
+            result = 31 * result + value;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Radius Networks, Inc.
+ * http://www.radiusnetworks.com
+ *
+ * @author David G. Young
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.altbeacon.beacon;
+
+import android.content.Context;
+import android.os.Parcel;
+
+import org.altbeacon.beacon.logging.LogManager;
+import org.altbeacon.beacon.service.MonitoringData;
+import org.altbeacon.beacon.service.RangingData;
+import org.altbeacon.beacon.service.RangingDataBatch;
+import org.altbeacon.beacon.service.RangingDelta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hands ranging and monitoring results from the beacon service to the notifiers registered with
+ * the <code>BeaconManager</code>.  Used by {@link BeaconIntentProcessor} for results that arrive by
+ * intent, and directly by the service when it runs in the same process as the app.
+ */
+public class NotifierDispatcher {
+    private static final String TAG = "NotifierDispatcher";
+
+    private final BeaconManager mBeaconManager;
+
+    public NotifierDispatcher(Context context) {
+        mBeaconManager = BeaconManager.getInstanceForApplication(context);
+    }
+
+    /**
+     * Delivers a <code>RangingData</code>, <code>RangingDataBatch</code>, <code>RangingDelta</code>
+     * or <code>MonitoringData</code>.  Other objects are ignored.
+     * @param data
+     */
+    public void dispatch(Object data) {
+        if (data instanceof RangingData) {
+            dispatch((RangingData) data);
+        }
+        else if (data instanceof RangingDataBatch) {
+            dispatch((RangingDataBatch) data);
+        }
+        else if (data instanceof RangingDelta) {
+            dispatch((RangingDelta) data);
+        }
+        else if (data instanceof MonitoringData) {
+            dispatch((MonitoringData) data);
+        }
+    }
+
+    /**
+     * Copies the beacons of ranging results, so notifiers called directly get beacons of their
+     * own like those unparcelled from an intent, rather than the ones the service keeps updating.
+     * Copies are of the same class as the originals.
+     * Must be called on the thread that produced the results.
+     * @param data
+     * @return a copy of ranging results, or the data itself for other objects
+     */
+    public static Object snapshot(Object data) {
+        if (data instanceof RangingData) {
+            RangingData rangingData = (RangingData) data;
+            return new RangingData(copyBeacons(rangingData.getBeacons()), rangingData.getRegion());
+        }
+        if (data instanceof RangingDataBatch) {
+            RangingDataBatch rangingDataBatch = (RangingDataBatch) data;
+            RangingDataBatch copy = new RangingDataBatch();
+            for (int i = 0; i < rangingDataBatch.size(); i++) {
+                copy.add(rangingDataBatch.getRegion(i), copyBeacons(rangingDataBatch.getBeacons(i)));
+            }
+            return copy;
+        }
+        if (data instanceof RangingDelta) {
+            RangingDelta rangingDelta = (RangingDelta) data;
+            return new RangingDelta(rangingDelta.getRegion(), copyBeacons(rangingDelta.getEntered()),
+                    copyBeacons(rangingDelta.getChanged()), copyBeacons(rangingDelta.getLeft()));
+        }
+        return data;
+    }
+
+    private static List<Beacon> copyBeacons(Collection<Beacon> beacons) {
+        if (beacons == null) {
+            return null;
+        }
+        List<Beacon> copies = new ArrayList<Beacon>(beacons.size());
+        for (Beacon beacon : beacons) {
+            copies.add(copyBeacon(beacon));
+        }
+        return copies;
+    }
+
+    // Keeps the class of the beacon, as unparcelling the intent would
+    private static Beacon copyBeacon(Beacon beacon) {
+        if (beacon.getClass() == Beacon.class) {
+            return new Beacon(beacon);
+        }
+        if (beacon.getClass() == AltBeacon.class) {
+            return new AltBeacon(beacon);
+        }
+        // other subclasses may have fields of their own, which only their parcel code knows
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(beacon, 0);
+            parcel.setDataPosition(0);
+            return parcel.readParcelable(beacon.getClass().getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public void dispatch(RangingData rangingData) {
+        LogManager.d(TAG, "got ranging data");
+        if (rangingData.getBeacons() == null) {
+            LogManager.w(TAG, "Ranging data has a null beacons collection");
+        }
+        notifyRangeNotifiers(rangingData.getBeacons(), rangingData.getRegion());
+    }
+
+    public void dispatch(RangingDataBatch rangingDataBatch) {
+        LogManager.d(TAG, "got ranging data for %s regions", rangingDataBatch.size());
+        for (int i = 0; i < rangingDataBatch.size(); i++) {
+            notifyRangeNotifiers(rangingDataBatch.getBeacons(i), rangingDataBatch.getRegion(i));
+        }
+    }
+
+    /**
+     * Delivers the changes to the delta range notifier.  The other range notifiers are given the
+     * full set of beacons, rebuilt from the changes, but only when something changed.  Unchanged
+     * beacons in that set have the values of the delta in which they were last delivered.
+     * @param rangingDelta
+     */
+    public void dispatch(RangingDelta rangingDelta) {
+        LogManager.d(TAG, "got ranging changes");
+        DeltaRangeNotifier deltaNotifier = mBeaconManager.getDeltaRangeNotifier();
+        if (deltaNotifier != null) {
+            deltaNotifier.didRangeBeaconChangesInRegion(rangingDelta.getEntered(), rangingDelta.getChanged(),
+                    rangingDelta.getLeft(), rangingDelta.getRegion());
+        }
+        if (mBeaconManager.getRangingNotifier() != null || mBeaconManager.getDataRequestNotifier() != null) {
+            notifyRangeNotifiers(mBeaconManager.applyRangingDelta(rangingDelta), rangingDelta.getRegion());
+        }
+    }
+
+    public void dispatch(MonitoringData monitoringData) {
+        LogManager.d(TAG, "got monitoring data");
+        MonitorNotifier notifier = mBeaconManager.getMonitoringNotifier();
+        if (notifier != null) {
+            LogManager.d(TAG, "Calling monitoring notifier: %s", notifier);
+            notifier.didDetermineStateForRegion(monitoringData.isInside() ? MonitorNotifier.INSIDE : MonitorNotifier.OUTSIDE, monitoringData.getRegion());
+            if (monitoringData.isInside()) {
+                notifier.didEnterRegion(monitoringData.getRegion());
+            }
+            else {
+                notifier.didExitRegion(monitoringData.getRegion());
+            }
+        }
+    }
+
+    private void notifyRangeNotifiers(Collection<Beacon> beacons, Region region) {
+        RangeNotifier notifier = mBeaconManager.getRangingNotifier();
+        if (notifier != null) {
+            notifier.didRangeBeaconsInRegion(beacons, region);
+        }
+        else {
+            LogManager.d(TAG, "but ranging notifier is null, so we're dropping it.");
+        }
+        RangeNotifier dataNotifier = mBeaconManager.getDataRequestNotifier();
+        if (dataNotifier != null) {
+            dataNotifier.didRangeBeaconsInRegion(beacons, region);
+        }
+    }
+}
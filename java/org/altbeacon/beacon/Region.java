@@ -233,34 +233,27 @@ public class Region implements Parcelable {
     }
 
     public void writeToParcel(Parcel out, int flags) {
-        out.writeString(mUniqueId);
-        out.writeString(mBluetoothAddress);
-        out.writeInt(mIdentifiers.size());
-
+        CompactParcel.Output compact = new CompactParcel.Output(32 + mIdentifiers.size() * 17);
+        compact.writeVarint(CompactParcel.VERSION);
+        compact.writeString(mUniqueId);
+        compact.writeAddress(mBluetoothAddress);
+        compact.writeVarint(mIdentifiers.size());
         for (Identifier identifier: mIdentifiers) {
-            if (identifier != null) {
-                out.writeString(identifier.toString());
-            }
-            else {
-                out.writeString(null);
-            }
+            compact.writeIdentifier(identifier, null);
         }
+        out.writeByteArray(compact.toByteArray());
     }
 
 
     protected Region(Parcel in) {
-        mUniqueId = in.readString();
-        mBluetoothAddress = in.readString();
-        int size = in.readInt();
+        CompactParcel.Input compact = new CompactParcel.Input(in.createByteArray());
+        CompactParcel.checkVersion(compact);
+        mUniqueId = compact.readString();
+        mBluetoothAddress = compact.readAddress();
+        int size = compact.readCount();
         mIdentifiers = new ArrayList<Identifier>(size);
         for (int i = 0; i < size; i++) {
-            String identifierString = in.readString();
-            if (identifierString == null) {
-                mIdentifiers.add(null);
-            } else {
-                Identifier identifier = Identifier.parse(identifierString);
-                mIdentifiers.add(identifier);
-            }
+            mIdentifiers.add(compact.readIdentifier(null));
         }
     }
 
@@ -0,0 +1,343 @@
+/**
+ * Radius Networks, Inc.
+ * http://www.radiusnetworks.com
+ *
+ * @author David G. Young
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.altbeacon.beacon;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the regions matching a beacon without testing every region.
+ *
+ * Regions are stored in a tree keyed by id1, then id2, then id3 and so on, where a null region
+ * identifier goes down a separate wildcard branch.  Regions that also name a Bluetooth address are
+ * kept in a per-address bucket at the end of their path.  A lookup follows at most the exact and
+ * the wildcard branch at each level, so its cost depends on the number of identifiers rather than
+ * the number of regions.  16 byte identifiers are looked up as two longs.
+ *
+ * The result is the same set of regions for which {@link Region#matchesBeacon(Beacon)} is true.
+ * Regions are keyed by unique id like everywhere else, so adding a region replaces any region with
+ * the same unique id.
+ *
+ * This class is not thread safe.  Callers must synchronize changes, but lookups do not modify the
+ * index, so an index that is no longer changed may be read from several threads.
+ */
+public class RegionIndex {
+    private final Node mRoot = new Node();
+    private final Map<Region, Region> mRegions = new HashMap<Region, Region>();
+
+    /**
+     * Adds a region, replacing a region with the same unique id
+     * @param region
+     */
+    public void add(Region region) {
+        remove(region);
+        List<Identifier> identifiers = region.mIdentifiers;
+        int depth = significantDepth(identifiers);
+        Node node = mRoot;
+        node.mCount++;
+        for (int i = 0; i < depth; i++) {
+            node = node.childForAdd(identifiers.get(i));
+            node.mCount++;
+        }
+        node.addRegion(region);
+        mRegions.put(region, region);
+    }
+
+    /**
+     * Removes the region with the same unique id as the one given
+     * @param region
+     * @return true if a region was removed
+     */
+    public boolean remove(Region region) {
+        Region stored = mRegions.remove(region);
+        if (stored == null) {
+            return false;
+        }
+        List<Identifier> identifiers = stored.mIdentifiers;
+        int depth = significantDepth(identifiers);
+        Node node = mRoot;
+        node.mCount--;
+        for (int i = 0; i < depth; i++) {
+            Node child = node.child(identifiers.get(i));
+            if (--child.mCount == 0) {
+                // nothing left below, so drop the whole branch
+                node.removeChild(identifiers.get(i));
+                return true;
+            }
+            node = child;
+        }
+        node.removeRegion(stored);
+        return true;
+    }
+
+    public void clear() {
+        mRoot.clear();
+        mRegions.clear();
+    }
+
+    public int size() {
+        return mRegions.size();
+    }
+
+    /**
+     * @return the regions matching the beacon
+     */
+    public List<Region> matchingRegions(Beacon beacon) {
+        List<Region> matched = new ArrayList<Region>();
+        matchingRegions(beacon, matched);
+        return matched;
+    }
+
+    /**
+     * Adds the regions matching the beacon to a collection
+     * @param beacon
+     * @param matched receives the matching regions
+     */
+    public void matchingRegions(Beacon beacon, Collection<Region> matched) {
+        if (mRoot.mCount == 0) {
+            return;
+        }
+        String address = beacon.mBluetoothAddress == null ? null : beacon.mBluetoothAddress.toUpperCase(Locale.US);
+        collect(mRoot, beacon.mIdentifiers, 0, address, matched);
+    }
+
+    private static void collect(Node node, List<Identifier> identifiers, int depth, String address,
+                                Collection<Region> matched) {
+        node.collectRegions(address, matched);
+        if (depth < identifiers.size()) {
+            Identifier identifier = identifiers.get(depth);
+            if (identifier != null) {
+                Node child = node.child(identifier);
+                if (child != null) {
+                    collect(child, identifiers, depth + 1, address, matched);
+                }
+            }
+        }
+        if (node.mWildcard != null) {
+            collect(node.mWildcard, identifiers, depth + 1, address, matched);
+        }
+    }
+
+    // Trailing null identifiers match anything, so a region ends at its last non-null identifier
+    private static int significantDepth(List<Identifier> identifiers) {
+        int depth = identifiers.size();
+        while (depth > 0 && identifiers.get(depth - 1) == null) {
+            depth--;
+        }
+        return depth;
+    }
+
+    private static final class Node {
+        // number of regions stored at or below this node
+        int mCount;
+        Node mWildcard;
+        UuidTable mUuidChildren;
+        Map<Identifier, Node> mChildren;
+        List<Region> mRegions;
+        Map<String, List<Region>> mRegionsByAddress;
+
+        Node child(Identifier identifier) {
+            if (identifier == null) {
+                return mWildcard;
+            }
+            if (identifier.getByteCount() == 16) {
+                return mUuidChildren == null ? null : mUuidChildren.get(identifier);
+            }
+            return mChildren == null ? null : mChildren.get(identifier);
+        }
+
+        Node childForAdd(Identifier identifier) {
+            Node child = child(identifier);
+            if (child == null) {
+                child = new Node();
+                if (identifier == null) {
+                    mWildcard = child;
+                }
+                else if (identifier.getByteCount() == 16) {
+                    if (mUuidChildren == null) {
+                        mUuidChildren = new UuidTable();
+                    }
+                    mUuidChildren.put(identifier, child);
+                }
+                else {
+                    if (mChildren == null) {
+                        mChildren = new HashMap<Identifier, Node>();
+                    }
+                    mChildren.put(identifier, child);
+                }
+            }
+            return child;
+        }
+
+        void removeChild(Identifier identifier) {
+            if (identifier == null) {
+                mWildcard = null;
+            }
+            else if (identifier.getByteCount() == 16) {
+                mUuidChildren.remove(identifier);
+            }
+            else {
+                mChildren.remove(identifier);
+            }
+        }
+
+        void addRegion(Region region) {
+            if (region.mBluetoothAddress == null) {
+                if (mRegions == null) {
+                    mRegions = new ArrayList<Region>(1);
+                }
+                mRegions.add(region);
+            }
+            else {
+                if (mRegionsByAddress == null) {
+                    mRegionsByAddress = new HashMap<String, List<Region>>();
+                }
+                String address = region.mBluetoothAddress.toUpperCase(Locale.US);
+                List<Region> regions = mRegionsByAddress.get(address);
+                if (regions == null) {
+                    regions = new ArrayList<Region>(1);
+                    mRegionsByAddress.put(address, regions);
+                }
+                regions.add(region);
+            }
+        }
+
+        void removeRegion(Region region) {
+            if (region.mBluetoothAddress == null) {
+                mRegions.remove(region);
+            }
+            else {
+                String address = region.mBluetoothAddress.toUpperCase(Locale.US);
+                List<Region> regions = mRegionsByAddress.get(address);
+                regions.remove(region);
+                if (regions.isEmpty()) {
+                    mRegionsByAddress.remove(address);
+                }
+            }
+        }
+
+        void collectRegions(String address, Collection<Region> matched) {
+            if (mRegions != null) {
+                matched.addAll(mRegions);
+            }
+            if (mRegionsByAddress != null && address != null) {
+                List<Region> regions = mRegionsByAddress.get(address);
+                if (regions != null) {
+                    matched.addAll(regions);
+                }
+            }
+        }
+
+        void clear() {
+            mCount = 0;
+            mWildcard = null;
+            mUuidChildren = null;
+            mChildren = null;
+            mRegions = null;
+            mRegionsByAddress = null;
+        }
+    }
+
+    /**
+     * Open addressing hash table from 16 byte identifiers to nodes, comparing keys as two longs
+     */
+    private static final class UuidTable {
+        private long[] mHighs = new long[4];
+        private long[] mLows = new long[4];
+        private Node[] mNodes = new Node[4];
+        private int mSize;
+
+        Node get(Identifier identifier) {
+            long high = identifier.readLong(0);
+            long low = identifier.readLong(8);
+            int mask = mNodes.length - 1;
+            for (int i = slot(high, low, mask); mNodes[i] != null; i = (i + 1) & mask) {
+                if (mHighs[i] == high && mLows[i] == low) {
+                    return mNodes[i];
+                }
+            }
+            return null;
+        }
+
+        void put(Identifier identifier, Node node) {
+            if ((mSize + 1) * 2 > mNodes.length) {
+                resize(mNodes.length * 2);
+            }
+            insert(identifier.readLong(0), identifier.readLong(8), node);
+            mSize++;
+        }
+
+        void remove(Identifier identifier) {
+            long high = identifier.readLong(0);
+            long low = identifier.readLong(8);
+            int mask = mNodes.length - 1;
+            for (int i = slot(high, low, mask); mNodes[i] != null; i = (i + 1) & mask) {
+                if (mHighs[i] == high && mLows[i] == low) {
+                    mNodes[i] = null;
+                    mSize--;
+                    // re-insert the rest of the probe run so lookups do not stop at the gap
+                    for (int j = (i + 1) & mask; mNodes[j] != null; j = (j + 1) & mask) {
+                        Node moved = mNodes[j];
+                        mNodes[j] = null;
+                        insert(mHighs[j], mLows[j], moved);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void insert(long high, long low, Node node) {
+            int mask = mNodes.length - 1;
+            int i = slot(high, low, mask);
+            while (mNodes[i] != null) {
+                i = (i + 1) & mask;
+            }
+            mHighs[i] = high;
+            mLows[i] = low;
+            mNodes[i] = node;
+        }
+
+        private void resize(int capacity) {
+            long[] highs = mHighs;
+            long[] lows = mLows;
+            Node[] nodes = mNodes;
+            mHighs = new long[capacity];
+            mLows = new long[capacity];
+            mNodes = new Node[capacity];
+            for (int i = 0; i < nodes.length; i++) {
+                if (nodes[i] != null) {
+                    insert(highs[i], lows[i], nodes[i]);
+                }
+            }
+        }
+
+        private static int slot(long high, long low, int mask) {
+            return (int) Identifier.mix(high * 31 + low) & mask;
+        }
+    }
+}
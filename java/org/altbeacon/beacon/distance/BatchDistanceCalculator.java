@@ -0,0 +1,17 @@
+package org.altbeacon.beacon.distance;
+
+/**
+ * A <code>DistanceCalculator</code> that can estimate the distances of many beacons in one call,
+ * as done for all beacons ranged in a scan cycle.
+ */
+public interface BatchDistanceCalculator extends DistanceCalculator {
+    /**
+     * Fills out[i] with the distance for txPower[i] and rssi[i], the same as
+     * {@link #calculateDistance(int, double)} would
+     *
+     * @param txPower
+     * @param rssi
+     * @param out estimated distances
+     */
+    public void calculateDistances(int[] txPower, double[] rssi, double[] out);
+}
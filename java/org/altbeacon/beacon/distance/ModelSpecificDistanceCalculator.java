@@ -44,7 +44,7 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * Created by dyoung on 8/28/14.
  */
-public class ModelSpecificDistanceCalculator implements DistanceCalculator {
+public class ModelSpecificDistanceCalculator implements BatchDistanceCalculator {
     Map<AndroidModel,DistanceCalculator> mModelMap;
     private static final String CONFIG_FILE = "model-distance-calculations.json";
     private static final String TAG = "ModelSpecificDistanceCalculator";
@@ -99,6 +99,19 @@ public class ModelSpecificDistanceCalculator implements DistanceCalculator {
         return mDistanceCalculator.calculateDistance(txPower, rssi);
     }
 
+    @Override
+    public void calculateDistances(int[] txPower, double[] rssi, double[] out) {
+        DistanceCalculator distanceCalculator = mDistanceCalculator;
+        if (distanceCalculator instanceof BatchDistanceCalculator) {
+            ((BatchDistanceCalculator) distanceCalculator).calculateDistances(txPower, rssi, out);
+        }
+        else {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = calculateDistance(txPower[i], rssi[i]);
+            }
+        }
+    }
+
     DistanceCalculator findCalculatorForModelWithLock(AndroidModel model) {
         mLock.lock();
         try {
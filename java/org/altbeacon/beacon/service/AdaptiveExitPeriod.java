@@ -0,0 +1,127 @@
+package org.altbeacon.beacon.service;
+
+import org.altbeacon.beacon.BeaconManager;
+
+import java.util.Arrays;
+
+/**
+ * Learns how long to wait before exiting a region from the gaps between detections of its
+ * beacons.
+ *
+ * Packets of a region arrive many times a second, so only the longest gap of each
+ * {@link #WINDOW_MILLIS} window is kept, which holds the outages of the last several minutes
+ * rather than the spacing of the last few packets.  The exit period is twice the longest of
+ * those gaps, or a lower percentile of them if one is set, limited to a floor and a ceiling.
+ * Outages come every few minutes at most, so they fill only a few windows of the history, and
+ * any percentile much below 1 ignores them.  Regions whose beacons drop out for longer get a
+ * longer period instead of flapping between exit and entry.  The floor defaults to
+ * {@link BeaconManager#getRegionExitPeriod()}, so a region never exits sooner than it would
+ * without learning.  Gaps longer than the ceiling, such as pauses between background scans, are
+ * ignored while the region is inside, but the outage that caused an exit is always learned,
+ * capped at the ceiling.  Until enough windows are known the region exit period is used.
+ *
+ * Disabled by default.  Enable it with
+ * {@link BeaconManager#setAdaptiveRegionExitEnabled(boolean)}.  Instances are guarded by the
+ * owning MonitorState.
+ */
+public class AdaptiveExitPeriod {
+    static final long WINDOW_MILLIS = 10000l;
+    private static final int GAP_COUNT = 64;
+    private static final int MIN_GAP_COUNT = 10;
+    private static boolean sEnabled = false;
+    private static double sPercentile = 1.0;
+    // -1 for the region exit period
+    private static long sFloorMillis = -1;
+    private static long sCeilingMillis = 60000l;
+
+    private final long[] mGaps = new long[GAP_COUNT];
+    private int mGapCount;
+    private int mNextGap;
+    // start of the window being collected and its longest gap so far, -1 when it has none
+    private long mWindowStart;
+    private long mWindowGap = -1;
+    // twice the percentile gap limited to the ceiling, -1 when it has to be worked out again
+    private long mExitPeriod = -1;
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @param percentile the share of gaps, between 0 and 1, that the learned period is based on.
+     *                   Defaults to 1, the longest gap.
+     */
+    public static void setPercentile(double percentile) {
+        sPercentile = percentile;
+    }
+
+    /**
+     * Sets the limits of the learned exit period.  Defaults to the region exit period and 60
+     * seconds.
+     * @param floorMillis the shortest period, or -1 for the region exit period
+     * @param ceilingMillis
+     */
+    public static void setLimits(long floorMillis, long ceilingMillis) {
+        sFloorMillis = floorMillis;
+        sCeilingMillis = ceilingMillis;
+    }
+
+    /**
+     * Records the time between two detections of the region
+     * @param gapMillis
+     * @param now the time of the later detection
+     */
+    void addGap(long gapMillis, long now) {
+        if (mWindowGap >= 0 && now - mWindowStart >= WINDOW_MILLIS) {
+            // the window is over, so its longest gap joins the history
+            mGaps[mNextGap] = mWindowGap;
+            mNextGap = (mNextGap + 1) % GAP_COUNT;
+            if (mGapCount < GAP_COUNT) {
+                mGapCount++;
+            }
+            mExitPeriod = -1;
+            mWindowGap = -1;
+        }
+        if (gapMillis < 0 || gapMillis > sCeilingMillis) {
+            return;
+        }
+        if (mWindowGap < 0) {
+            mWindowStart = now;
+        }
+        mWindowGap = Math.max(mWindowGap, gapMillis);
+    }
+
+    /**
+     * Records a gap during which the region was exited.  Unlike other gaps it is kept when it is
+     * longer than the ceiling, as the ceiling, because exits caused by long outages are what
+     * the learned period has to prevent.
+     * @param gapMillis
+     * @param now the time of the detection that entered the region again
+     */
+    void addExitGap(long gapMillis, long now) {
+        addGap(Math.min(gapMillis, sCeilingMillis), now);
+    }
+
+    /**
+     * @return the time without detections after which the region is exited
+     */
+    long getExitPeriod() {
+        if (!sEnabled || mGapCount < MIN_GAP_COUNT) {
+            return BeaconManager.getRegionExitPeriod();
+        }
+        if (mExitPeriod < 0) {
+            long[] gaps = Arrays.copyOf(mGaps, mGapCount);
+            Arrays.sort(gaps);
+            int index = (int) Math.ceil(sPercentile * gaps.length) - 1;
+            long gap = gaps[Math.max(0, Math.min(gaps.length - 1, index))];
+            mExitPeriod = Math.min(sCeilingMillis, gap * 2);
+        }
+        // applied on every call, as the region exit period may change
+        long floor = sFloorMillis < 0 ? BeaconManager.getRegionExitPeriod() : sFloorMillis;
+        return Math.max(floor, mExitPeriod);
+    }
+}
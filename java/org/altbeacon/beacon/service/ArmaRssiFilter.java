@@ -12,7 +12,7 @@ import org.altbeacon.beacon.logging.LogManager;
  *       actual measurement and the actual average)
  *       For signals at lower rates (10Hz) a value of 0.25 to 0.5 would be appropriate
  */
-public class ArmaRssiFilter implements RssiFilter {
+public class ArmaRssiFilter implements ResettableRssiFilter {
 
     private static double DEFAULT_ARMA_SPEED = 0.1;     //How likely is it that the RSSI value changes?
                                                         //Note: the more unlikely, the higher can that value be
@@ -49,6 +49,12 @@ public class ArmaRssiFilter implements RssiFilter {
 
     }
 
+    public void reset() {
+        armaMeasurement = 0;
+        armaSpeed = DEFAULT_ARMA_SPEED;
+        isInitialized = false;
+    }
+
     public static void setDEFAULT_ARMA_SPEED(double default_arma_speed) {
         DEFAULT_ARMA_SPEED = default_arma_speed;
     }
@@ -27,19 +27,21 @@ package org.altbeacon.beacon.service;
 import android.annotation.TargetApi;
 import android.app.Service;
 import android.bluetooth.BluetoothDevice;
+import android.content.ComponentName;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
-import android.os.AsyncTask;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
 import android.os.Messenger;
+import android.os.Process;
 
 import org.altbeacon.beacon.Beacon;
 import org.altbeacon.beacon.BeaconManager;
 import org.altbeacon.beacon.BeaconParser;
+import org.altbeacon.beacon.BeaconParserRegistry;
 //import org.altbeacon.beacon.BuildConfig;
 import org.altbeacon.beacon.Region;
 import org.altbeacon.beacon.distance.DistanceCalculator;
@@ -53,13 +55,12 @@ import org.altbeacon.bluetooth.BluetoothCrashResolver;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author dyoung
@@ -69,19 +70,32 @@ import java.util.concurrent.RejectedExecutionException;
 public class BeaconService extends Service {
     public static final String TAG = "BeaconService";
 
-    private final Map<Region, RangeState> rangedRegionState = new HashMap<Region, RangeState>();
-    private final Map<Region, MonitorState> monitoredRegionState = new HashMap<Region, MonitorState>();
+    // Replaced as a whole when regions are added or removed, so scan workers read them without locking
+    private volatile RegionTable<RangeState> mRangedRegions = RegionTable.empty();
+    private volatile RegionTable<MonitorState> mMonitoredRegions = RegionTable.empty();
+    // Serializes changes to the region tables
+    private final Object mRegionTableLock = new Object();
     int trackedBeaconsPacketCount;
     private final Handler handler = new Handler();
+    // Regions are exited when their deadline in the wheel passes, not when a scan cycle ends
+    private final RegionExitWheel mExitWheel = new RegionExitWheel();
+    // Exits that came due while scanning was paused, confirmed at the end of the next cycle
+    private final Set<MonitorState> mDeferredExits = Collections.newSetFromMap(new ConcurrentHashMap<MonitorState, Boolean>());
+    private volatile long mBetweenScanPeriod = BeaconManager.DEFAULT_FOREGROUND_BETWEEN_SCAN_PERIOD;
+    private volatile long mLastCycleEndTime = 0;
     private int bindCount = 0;
     private BluetoothCrashResolver bluetoothCrashResolver;
     private DistanceCalculator defaultDistanceCalculator = null;
     private BeaconManager beaconManager;
     private List<BeaconParser> beaconParsers;
+    private volatile BeaconParserRegistry mParserRegistry;
     private CycledLeScanner mCycledScanner;
     private boolean mBackgroundFlag = false;
     private final GattBeaconTracker mGattBeaconTracker = new GattBeaconTracker();
-    private ExecutorService mExecutor;
+    private ShardedScanIngestion mScanIngestion;
+    private DuplicateAdvertisementCache mDuplicateCache;
+    private long mLastDroppedScanCount = 0;
+    private long mLastCoalescedScanCount = 0;
 
     /*
      * The scan period is how long we wait between restarting the BLE advertisement scans
@@ -144,7 +158,7 @@ public class BeaconService extends Service {
                 switch (msg.what) {
                     case MSG_START_RANGING:
                         LogManager.i(TAG, "start ranging received");
-                        service.startRangingBeaconsInRegion(startRMData.getRegionData(), new org.altbeacon.beacon.service.Callback(startRMData.getCallbackPackageName()));
+                        service.startRangingBeaconsInRegion(startRMData.getRegionData(), createCallback(startRMData));
                         service.setScanPeriods(startRMData.getScanPeriod(), startRMData.getBetweenScanPeriod(), startRMData.getBackgroundFlag());
                         break;
                     case MSG_STOP_RANGING:
@@ -154,7 +168,7 @@ public class BeaconService extends Service {
                         break;
                     case MSG_START_MONITORING:
                         LogManager.i(TAG, "start monitoring received");
-                        service.startMonitoringBeaconsInRegion(startRMData.getRegionData(), new org.altbeacon.beacon.service.Callback(startRMData.getCallbackPackageName()));
+                        service.startMonitoringBeaconsInRegion(startRMData.getRegionData(), createCallback(startRMData));
                         service.setScanPeriods(startRMData.getScanPeriod(), startRMData.getBetweenScanPeriod(), startRMData.getBackgroundFlag());
                         break;
                     case MSG_STOP_MONITORING:
@@ -173,6 +187,11 @@ public class BeaconService extends Service {
         }
     }
 
+    private static Callback createCallback(StartRMData startRMData) {
+        boolean local = startRMData.getCallbackProcessId() == Process.myPid();
+        return new Callback(startRMData.getCallbackPackageName(), local);
+    }
+
     /**
      * Target we publish for clients to send messages to IncomingHandler.
      */
@@ -203,9 +222,14 @@ public class BeaconService extends Service {
         bluetoothCrashResolver = new BluetoothCrashResolver(this);
         bluetoothCrashResolver.start();
 
-        // Create a private executor so we don't compete with threads used by AsyncTask
-        // This uses fewer threads than the default executor so it won't hog CPU
-        mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+        // Scan results, batched or not, are queued and parsed by long-lived workers instead of a task
+        // per packet, so bursts are absorbed without allocating and losses are counted.  Each
+        // device is handled by one worker, so its beacon state is never updated concurrently.
+        if (DuplicateAdvertisementCache.isEnabled()) {
+            mDuplicateCache = new DuplicateAdvertisementCache();
+        }
+        mScanIngestion = new ShardedScanIngestion(Runtime.getRuntime().availableProcessors());
+        mScanIngestion.start(mScanConsumer);
 
         mCycledScanner = CycledLeScanner.createScanner(this, BeaconManager.DEFAULT_FOREGROUND_SCAN_PERIOD,
                 BeaconManager.DEFAULT_FOREGROUND_BETWEEN_SCAN_PERIOD, mBackgroundFlag, mCycledLeScanCallback, bluetoothCrashResolver);
@@ -237,7 +261,9 @@ public class BeaconService extends Service {
         bluetoothCrashResolver.stop();
         LogManager.i(TAG, "onDestroy called.  stopping scanning");
         handler.removeCallbacksAndMessages(null);
+        mExitWheel.clear();
         mCycledScanner.stop();
+        mScanIngestion.close();
     }
 
     /**
@@ -245,78 +271,94 @@ public class BeaconService extends Service {
      */
 
     public void startRangingBeaconsInRegion(Region region, Callback callback) {
-        synchronized (rangedRegionState) {
-            if (rangedRegionState.containsKey(region)) {
+        synchronized (mRegionTableLock) {
+            if (mRangedRegions.contains(region)) {
                 LogManager.i(TAG, "Already ranging that region -- will replace existing region.");
-                rangedRegionState.remove(region); // need to remove it, otherwise the old object will be retained because they are .equal
             }
-            rangedRegionState.put(region, new RangeState(callback));
-            LogManager.d(TAG, "Currently ranging %s regions.", rangedRegionState.size());
+            mRangedRegions = mRangedRegions.with(region, new RangeState(callback));
+            invalidateDuplicateCache();
+            LogManager.d(TAG, "Currently ranging %s regions.", mRangedRegions.size());
         }
         mCycledScanner.start();
     }
 
     public void stopRangingBeaconsInRegion(Region region) {
         int rangedRegionCount;
-        synchronized (rangedRegionState) {
-            rangedRegionState.remove(region);
-            rangedRegionCount = rangedRegionState.size();
-            LogManager.d(TAG, "Currently ranging %s regions.", rangedRegionState.size());
+        synchronized (mRegionTableLock) {
+            mRangedRegions = mRangedRegions.without(region);
+            invalidateDuplicateCache();
+            rangedRegionCount = mRangedRegions.size();
+            LogManager.d(TAG, "Currently ranging %s regions.", rangedRegionCount);
         }
 
-        if (rangedRegionCount == 0 && monitoredRegionState.size() == 0) {
+        if (rangedRegionCount == 0 && mMonitoredRegions.size() == 0) {
             mCycledScanner.stop();
         }
     }
 
     public void startMonitoringBeaconsInRegion(Region region, Callback callback) {
         LogManager.d(TAG, "startMonitoring called");
-        synchronized (monitoredRegionState) {
-            if (monitoredRegionState.containsKey(region)) {
+        synchronized (mRegionTableLock) {
+            MonitorState existing = mMonitoredRegions.get(region);
+            if (existing != null) {
                 LogManager.i(TAG, "Already monitoring that region -- will replace existing region monitor.");
-                monitoredRegionState.remove(region); // need to remove it, otherwise the old object will be retained because they are .equal
+                cancelExit(existing);
             }
-            monitoredRegionState.put(region, new MonitorState(callback));
+            mMonitoredRegions = mMonitoredRegions.with(region, new MonitorState(callback, region));
+            invalidateDuplicateCache();
         }
-        LogManager.d(TAG, "Currently monitoring %s regions.", monitoredRegionState.size());
+        LogManager.d(TAG, "Currently monitoring %s regions.", mMonitoredRegions.size());
         mCycledScanner.start();
     }
 
     public void stopMonitoringBeaconsInRegion(Region region) {
         int monitoredRegionCount;
         LogManager.d(TAG, "stopMonitoring called");
-        synchronized (monitoredRegionState) {
-            monitoredRegionState.remove(region);
-            monitoredRegionCount = monitoredRegionState.size();
+        synchronized (mRegionTableLock) {
+            MonitorState existing = mMonitoredRegions.get(region);
+            if (existing != null) {
+                cancelExit(existing);
+            }
+            mMonitoredRegions = mMonitoredRegions.without(region);
+            invalidateDuplicateCache();
+            monitoredRegionCount = mMonitoredRegions.size();
         }
-        LogManager.d(TAG, "Currently monitoring %s regions.", monitoredRegionState.size());
-        if (monitoredRegionCount == 0 && rangedRegionState.size() == 0) {
+        LogManager.d(TAG, "Currently monitoring %s regions.", monitoredRegionCount);
+        if (monitoredRegionCount == 0 && mRangedRegions.size() == 0) {
             mCycledScanner.stop();
         }
     }
 
     public void setScanPeriods(long scanPeriod, long betweenScanPeriod, boolean backgroundFlag) {
+        mBetweenScanPeriod = betweenScanPeriod;
         mCycledScanner.setScanPeriods(scanPeriod, betweenScanPeriod, backgroundFlag);
     }
 
     protected final CycledLeScanCallback mCycledLeScanCallback = new CycledLeScanCallback() {
-        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
         @Override
         public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+            mScanIngestion.offer(device, rssi, scanRecord, System.currentTimeMillis());
+        }
 
-            NonBeaconLeScanCallback nonBeaconLeScanCallback = beaconManager.getNonBeaconLeScanCallback();
-
-            try {
-                new ScanProcessor(nonBeaconLeScanCallback).executeOnExecutor(mExecutor,
-                        new ScanData(device, rssi, scanRecord));
-            }
-            catch (RejectedExecutionException e) {
-                LogManager.w(TAG, "Ignoring scan result because we cannot keep up.");
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+        @Override
+        public void onLeScanBatch(BluetoothDevice[] devices, int[] rssis, byte[][] scanRecords, int count) {
+            // each result goes to the shard of its device, so batched and single results of a
+            // device are processed in order by one worker, and losses are counted the same way
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                mScanIngestion.offer(devices[i], rssis[i], scanRecords[i], now);
             }
         }
 
         @Override
         public void onCycleEnd() {
+            // Pick up parsers that were swapped or whose layouts changed during the cycle
+            getParserRegistry(true);
+            logScanIngestionLosses();
+            // ranged beacons are finalized below, so cached matches must not outlive this cycle
+            invalidateDuplicateCache();
+            mLastCycleEndTime = System.currentTimeMillis();
             processExpiredMonitors();
             processRangeData();
             // If we want to use simulated scanning data, do it here.  This is used for testing in an emulator
@@ -351,33 +393,163 @@ public class BeaconService extends Service {
         }
     };
 
+    /**
+     * Delivers ranging results for a snapshot of the ranged regions.  Callbacks start services, so
+     * they are made without holding any lock that scan workers need.
+     */
     private void processRangeData() {
-        synchronized(rangedRegionState) {
-            Iterator<Region> regionIterator = rangedRegionState.keySet().iterator();
-            while (regionIterator.hasNext()) {
-                Region region = regionIterator.next();
-                RangeState rangeState = rangedRegionState.get(region);
-                LogManager.d(TAG, "Calling ranging callback");
-                rangeState.getCallback().call(BeaconService.this, "rangingData", new RangingData(rangeState.finalizeBeacons(), region));
+        if (RangingDelta.isEnabled()) {
+            processRangeDeltas();
+            return;
+        }
+        if (RangingDataBatch.isEnabled()) {
+            processRangeDataBatches();
+            return;
+        }
+        for (Map.Entry<Region, RangeState> entry : mRangedRegions.getStates().entrySet()) {
+            RangeState rangeState = entry.getValue();
+            LogManager.d(TAG, "Calling ranging callback");
+            rangeState.getCallback().call(BeaconService.this, "rangingData", new RangingData(rangeState.finalizeBeacons(), entry.getKey()));
+        }
+    }
+
+    /**
+     * Delivers only the beacons that entered, changed or left each region, and nothing for regions
+     * without changes
+     */
+    private void processRangeDeltas() {
+        for (Map.Entry<Region, RangeState> entry : mRangedRegions.getStates().entrySet()) {
+            RangeState rangeState = entry.getValue();
+            RangingDelta delta = rangeState.finalizeDelta(entry.getKey());
+            if (!delta.isEmpty()) {
+                LogManager.d(TAG, "Calling ranging callback with changes");
+                rangeState.getCallback().call(BeaconService.this, "rangingDelta", delta);
+            }
+        }
+    }
+
+    /**
+     * Delivers the results for all regions ranged by the same app in a single callback
+     */
+    private void processRangeDataBatches() {
+        Map<ComponentName, RangingDataBatch> batches = new HashMap<ComponentName, RangingDataBatch>();
+        Map<ComponentName, Callback> callbacks = new HashMap<ComponentName, Callback>();
+        for (Map.Entry<Region, RangeState> entry : mRangedRegions.getStates().entrySet()) {
+            RangeState rangeState = entry.getValue();
+            Callback callback = rangeState.getCallback();
+            Collection<Beacon> beacons = rangeState.finalizeBeacons();
+            if (callback.getIntent() == null) {
+                continue;
             }
+            ComponentName component = callback.getIntent().getComponent();
+            RangingDataBatch batch = batches.get(component);
+            if (batch == null) {
+                batch = new RangingDataBatch();
+                batches.put(component, batch);
+                callbacks.put(component, callback);
+            }
+            batch.add(entry.getKey(), beacons);
+        }
+        for (Map.Entry<ComponentName, RangingDataBatch> entry : batches.entrySet()) {
+            LogManager.d(TAG, "Calling ranging callback for %s regions", entry.getValue().size());
+            callbacks.get(entry.getKey()).call(BeaconService.this, "rangingDataBatch", entry.getValue());
         }
     }
 
+    /**
+     * Confirms the exits that came due while scanning was paused, now that a full cycle has run
+     */
     private void processExpiredMonitors() {
-        synchronized (monitoredRegionState) {
-            Iterator<Region> monitoredRegionIterator = monitoredRegionState.keySet().iterator();
-            while (monitoredRegionIterator.hasNext()) {
-                Region region = monitoredRegionIterator.next();
-                MonitorState state = monitoredRegionState.get(region);
-                if (state.isNewlyOutside()) {
-                    LogManager.d(TAG, "found a monitor that expired: %s", region);
-                    state.getCallback().call(BeaconService.this, "monitoringData", new MonitoringData(state.isInside(), region));
-                }
+        for (MonitorState state : mDeferredExits) {
+            mDeferredExits.remove(state);
+            Region region = state.getRegion();
+            if (mMonitoredRegions.get(region) != state) {
+                continue;
+            }
+            if (state.isNewlyOutside()) {
+                LogManager.d(TAG, "found a monitor that expired: %s", region);
+                state.getCallback().call(BeaconService.this, "monitoringData", new MonitoringData(state.isInside(), region));
+            }
+        }
+    }
+
+    /**
+     * Records that beacons of a monitored region were seen, notifying an entry and pushing back the
+     * exit
+     */
+    private void markInside(MonitorState state, Region region) {
+        if (state.markInside()) {
+            state.getCallback().call(BeaconService.this, "monitoringData",
+                    new MonitoringData(state.isInside(), region));
+        }
+        // the wheel moves regions lazily, so a region already waiting there is left alone
+        if (!state.mExitScheduled) {
+            scheduleExit(state);
+        }
+    }
+
+    private void scheduleExit(MonitorState state) {
+        long deadline = state.getExitDeadline();
+        if (deadline != 0 && mExitWheel.schedule(state, deadline, System.currentTimeMillis())) {
+            handler.postDelayed(mExitWheelTick, mExitWheel.getTickMillis());
+        }
+    }
+
+    private void cancelExit(MonitorState state) {
+        mExitWheel.cancel(state);
+        mDeferredExits.remove(state);
+    }
+
+    private final Runnable mExitWheelTick = new Runnable() {
+        @Override
+        public void run() {
+            processRegionExits();
+            if (mExitWheel.continueTicking()) {
+                handler.postDelayed(mExitWheelTick, mExitWheel.getTickMillis());
+            }
+        }
+    };
+
+    /**
+     * Exits the regions whose deadlines passed without their beacons being seen again
+     */
+    private void processRegionExits() {
+        long now = System.currentTimeMillis();
+        for (MonitorState state : mExitWheel.advance(now)) {
+            Region region = state.getRegion();
+            if (mMonitoredRegions.get(region) != state) {
+                continue;
+            }
+            long deadline = state.getExitDeadline();
+            if (deadline == 0) {
+                continue;
+            }
+            if (deadline > now) {
+                // seen again since it was scheduled
+                scheduleExit(state);
+                continue;
+            }
+            if (mBetweenScanPeriod > 0 && mLastCycleEndTime >= state.getLastSeenTime()) {
+                // Not being seen while the scanner was paused says nothing, so let the next cycle decide
+                mDeferredExits.add(state);
+                continue;
+            }
+            if (state.isNewlyOutside()) {
+                LogManager.d(TAG, "found a monitor that expired: %s", region);
+                state.getCallback().call(BeaconService.this, "monitoringData", new MonitoringData(state.isInside(), region));
             }
         }
     }
 
     private void processBeaconFromScan(Beacon beacon) {
+        processBeaconFromScan(beacon, null, null, 0);
+    }
+
+    /**
+     * Processes a detection, and if a scan record is given, remembers the outcome so identical
+     * records from the same device can skip this work for the rest of the cycle.
+     */
+    private void processBeaconFromScan(Beacon beacon, BluetoothDevice device, byte[] scanRecord, long generation) {
         if (Stats.getInstance().isEnabled()) {
             Stats.getInstance().log(beacon);
         }
@@ -397,111 +569,114 @@ public class BeaconService extends Service {
             }
         }
         else {
-            List<Region> matchedRegions = null;
-            synchronized(monitoredRegionState) {
-                matchedRegions = matchingRegions(beacon,
-                        monitoredRegionState.keySet());
-            }
-            Iterator<Region> matchedRegionIterator = matchedRegions.iterator();
-            while (matchedRegionIterator.hasNext()) {
-                Region region = matchedRegionIterator.next();
-                MonitorState state = monitoredRegionState.get(region);
-                if (state != null && state.markInside()) {
-                    state.getCallback().call(BeaconService.this, "monitoringData",
-                            new MonitoringData(state.isInside(), region));
-                }
+            RegionTable<MonitorState> monitoredRegionTable = mMonitoredRegions;
+            List<Region> matchedRegions = monitoredRegionTable.matchingRegions(beacon);
+            List<Region> monitoredRegions = new ArrayList<Region>(matchedRegions.size());
+            List<MonitorState> monitorStates = new ArrayList<MonitorState>(matchedRegions.size());
+            for (Region region : matchedRegions) {
+                MonitorState state = monitoredRegionTable.get(region);
+                monitoredRegions.add(region);
+                monitorStates.add(state);
+                markInside(state, region);
             }
 
             LogManager.d(TAG, "looking for ranging region matches for this beacon");
-            synchronized (rangedRegionState) {
-                matchedRegions = matchingRegions(beacon, rangedRegionState.keySet());
-                matchedRegionIterator = matchedRegions.iterator();
-                while (matchedRegionIterator.hasNext()) {
-                    Region region = matchedRegionIterator.next();
-                    LogManager.d(TAG, "matches ranging region: %s", region);
-                    RangeState rangeState = rangedRegionState.get(region);
-                    if (rangeState != null) {
-                        rangeState.addBeacon(beacon);
-                    }
-                }
+            RegionTable<RangeState> rangedRegionTable = mRangedRegions;
+            matchedRegions = rangedRegionTable.matchingRegions(beacon);
+            List<RangeState> rangeStates = new ArrayList<RangeState>(matchedRegions.size());
+            for (Region region : matchedRegions) {
+                LogManager.d(TAG, "matches ranging region: %s", region);
+                RangeState rangeState = rangedRegionTable.get(region);
+                rangeState.addBeacon(beacon);
+                rangeStates.add(rangeState);
+            }
+            if (scanRecord != null && mDuplicateCache != null) {
+                mDuplicateCache.put(device, scanRecord, beacon, monitoredRegions, monitorStates,
+                        rangeStates, generation);
             }
         }
     }
 
-
-    private class ScanData {
-        public ScanData(BluetoothDevice device, int rssi, byte[] scanRecord) {
-            this.device = device;
-            this.rssi = rssi;
-            this.scanRecord = scanRecord;
+    /**
+     * Credits a repeat of an already processed scan record to the beacon and regions it matched,
+     * updating only the signal strength.
+     */
+    private void processDuplicateFromScan(DuplicateAdvertisementCache.Entry entry, int rssi) {
+        Beacon beacon = entry.beacon;
+        beacon.setRssi(rssi);
+        if (Stats.getInstance().isEnabled()) {
+            Stats.getInstance().log(beacon);
+        }
+        trackedBeaconsPacketCount++;
+        for (int i = 0; i < entry.monitorStates.length; i++) {
+            MonitorState state = entry.monitorStates[i];
+            markInside(state, entry.monitoredRegions[i]);
+        }
+        for (RangeState rangeState : entry.rangeStates) {
+            rangeState.addBeacon(beacon);
         }
-        int rssi;
-        BluetoothDevice device;
-        byte[] scanRecord;
     }
 
-    private class ScanProcessor extends AsyncTask<ScanData, Void, Void> {
-        final DetectionTracker mDetectionTracker = DetectionTracker.getInstance();
-
-        private final NonBeaconLeScanCallback mNonBeaconLeScanCallback;
 
-        public ScanProcessor(NonBeaconLeScanCallback nonBeaconLeScanCallback) {
-            mNonBeaconLeScanCallback = nonBeaconLeScanCallback;
+    /**
+     * Returns the parser registry, rebuilding it if parsers were added or removed.  A full check
+     * that the parsers and their layouts are unchanged is only done when requested, once per scan
+     * cycle, to keep the per-packet cost constant.
+     */
+    private BeaconParserRegistry getParserRegistry(boolean fullCheck) {
+        BeaconParserRegistry registry = mParserRegistry;
+        if (registry == null || registry.size() != beaconParsers.size()
+                || (fullCheck && !registry.isCurrent(beaconParsers))) {
+            registry = new BeaconParserRegistry(beaconParsers);
+            mParserRegistry = registry;
         }
+        return registry;
+    }
 
-        @Override
-        protected Void doInBackground(ScanData... params) {
-            ScanData scanData = params[0];
-            Beacon beacon = null;
-
-            for (BeaconParser parser : BeaconService.this.beaconParsers) {
-                beacon = parser.fromScanData(scanData.scanRecord,
-                        scanData.rssi, scanData.device);
+    private final ScanIngestionRing.Consumer mScanConsumer = new ScanIngestionRing.Consumer() {
+        final DetectionTracker mDetectionTracker = DetectionTracker.getInstance();
 
-                if (beacon != null) {
-                    break;
+        @Override
+        public void onScan(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp) {
+            long generation = 0;
+            if (mDuplicateCache != null) {
+                DuplicateAdvertisementCache.Entry entry = mDuplicateCache.get(device, scanRecord);
+                if (entry != null) {
+                    mDetectionTracker.recordDetection();
+                    processDuplicateFromScan(entry, rssi);
+                    return;
                 }
+                generation = mDuplicateCache.getGeneration();
             }
+            Beacon beacon = getParserRegistry(false).fromScanData(scanRecord, rssi, device);
             if (beacon != null) {
                 mDetectionTracker.recordDetection();
-                processBeaconFromScan(beacon);
+                processBeaconFromScan(beacon, device, scanRecord, generation);
             } else {
-                if (mNonBeaconLeScanCallback != null) {
-                    mNonBeaconLeScanCallback.onNonBeaconLeScan(scanData.device, scanData.rssi, scanData.scanRecord);
+                NonBeaconLeScanCallback nonBeaconLeScanCallback = beaconManager.getNonBeaconLeScanCallback();
+                if (nonBeaconLeScanCallback != null) {
+                    // the ring reuses the record buffer, so the callback gets its own copy
+                    nonBeaconLeScanCallback.onNonBeaconLeScan(device, rssi, scanRecord.clone());
                 }
             }
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void result) {
-        }
-
-        @Override
-        protected void onPreExecute() {
         }
+    };
 
-        @Override
-        protected void onProgressUpdate(Void... values) {
+    private void invalidateDuplicateCache() {
+        if (mDuplicateCache != null) {
+            mDuplicateCache.invalidate();
         }
     }
 
-    private List<Region> matchingRegions(Beacon beacon, Collection<Region> regions) {
-        List<Region> matched = new ArrayList<Region>();
-            Iterator<Region> regionIterator = regions.iterator();
-            while (regionIterator.hasNext()) {
-                Region region = regionIterator.next();
-                // Need to check if region is null in case it was removed from the collection by
-                // another thread during iteration
-                if (region != null) {
-                    if (region.matchesBeacon(beacon)) {
-                        matched.add(region);
-                    } else {
-                        LogManager.d(TAG, "This region (%s) does not match beacon: %s", region, beacon);
-                    }
-                }
-            }
-
-        return matched;
+    private void logScanIngestionLosses() {
+        long dropped = mScanIngestion.getDroppedCount();
+        long coalesced = mScanIngestion.getCoalescedCount();
+        if (dropped != mLastDroppedScanCount || coalesced != mLastCoalescedScanCount) {
+            LogManager.w(TAG, "Scan results could not be processed fast enough. Dropped %d and coalesced %d this cycle (%d enqueued, %d processed in total)",
+                    dropped - mLastDroppedScanCount, coalesced - mLastCoalescedScanCount,
+                    mScanIngestion.getEnqueuedCount(), mScanIngestion.getProcessedCount());
+            mLastDroppedScanCount = dropped;
+            mLastCoalescedScanCount = coalesced;
+        }
     }
 }
@@ -28,25 +28,82 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Parcelable;
 
+import org.altbeacon.beacon.NotifierDispatcher;
 import org.altbeacon.beacon.logging.LogManager;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 public class Callback {
     private static final String TAG = "Callback";
+    private static boolean sDirectDeliveryEnabled = true;
+    private static Executor sDirectDeliveryExecutor = null;
     private Intent intent;
+    private final boolean mLocal;
+
     public Callback(String intentPackageName) {
+        this(intentPackageName, false);
+    }
+
+    /**
+     * @param intentPackageName package of the app receiving the callbacks
+     * @param local true if the app runs in the same process as the service, so callbacks can be
+     *              made directly instead of by intent
+     */
+    public Callback(String intentPackageName, boolean local) {
+        mLocal = local;
         if (intentPackageName != null) {
             intent = new Intent();
             intent.setComponent(new ComponentName(intentPackageName, "org.altbeacon.beacon.BeaconIntentProcessor"));
         }
     }
+
+    /**
+     * Enables or disables calling the notifiers directly when the app and the service share a
+     * process.  Enabled by default.
+     * @param enabled
+     */
+    public static void setDirectDeliveryEnabled(boolean enabled) {
+        sDirectDeliveryEnabled = enabled;
+    }
+
+    /**
+     * Sets the executor that runs notifiers called directly.  By default they run in order on a
+     * single background thread, like the intent service that handles callbacks otherwise.
+     * @param executor the executor, or null for the default
+     */
+    public static synchronized void setDirectDeliveryExecutor(Executor executor) {
+        sDirectDeliveryExecutor = executor;
+    }
+
+    private static synchronized Executor getDirectDeliveryExecutor() {
+        if (sDirectDeliveryExecutor == null) {
+            sDirectDeliveryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "BeaconCallbacks");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sDirectDeliveryExecutor;
+    }
+
     public Intent getIntent() {
         return intent;
     }
     public void setIntent(Intent intent) {
         this.intent = intent;
     }
+
+    public boolean isLocal() {
+        return mLocal;
+    }
+
     /**
-     * Tries making the callback, first via messenger, then via intent
+     * Tries making the callback, first directly if the app is in this process, then via intent
      *
      * @param context
      * @param dataName
@@ -54,6 +111,19 @@ public class Callback {
      * @return false if it callback cannot be made
      */
     public boolean call(Context context, String dataName, Parcelable data) {
+        if (mLocal && sDirectDeliveryEnabled) {
+            LogManager.d(TAG, "attempting direct callback");
+            final NotifierDispatcher dispatcher = new NotifierDispatcher(context);
+            // the service goes on updating its beacons, so the notifiers get copies taken now
+            final Object snapshot = NotifierDispatcher.snapshot(data);
+            getDirectDeliveryExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatcher.dispatch(snapshot);
+                }
+            });
+            return true;
+        }
         if (intent != null) {
             LogManager.d(TAG, "attempting callback via intent: %s", intent.getComponent());
             intent.putExtra(dataName, data);
@@ -0,0 +1,83 @@
+package org.altbeacon.beacon.service;
+
+import org.altbeacon.beacon.logging.LogManager;
+
+/**
+ * This filter calculates its rssi as an exponential moving average in continuous time, unlike
+ * {@link ArmaRssiFilter}, which moves by a fixed share of the difference on every sample.
+ *
+ * Before a sample is added, the weight of everything seen so far decays by exp(-dt / T), where dt
+ * is the time since the previous sample and T is the time constant.  Every sample then adds the
+ * same weight.  A beacon sending 10 packets per second averages ten times as many samples as one
+ * sending 1, but both forget old values over the same time, so fast and slow beacons settle in the
+ * same wall clock time.  Samples that arrive together, as in batched scan results, count equally.
+ * The estimate is kept as a double, so it is not truncated towards zero.
+ *
+ * Once no sample has arrived for {@link #EXPIRATION_TIME_CONSTANTS} time constants, the old
+ * samples have less than 2% of their weight left and the filter reports that no measurements are
+ * available, so the beacon can be dropped like with the running average filter.
+ */
+public class ContinuousArmaRssiFilter implements ResettableRssiFilter {
+
+    private static final String TAG = "ContinuousArmaRssiFilter";
+    public static final long DEFAULT_TIME_CONSTANT_MILLISECONDS = 5000;
+    public static final int EXPIRATION_TIME_CONSTANTS = 4;
+    private static long sTimeConstantMilliseconds = DEFAULT_TIME_CONSTANT_MILLISECONDS;
+
+    private double mWeightedSum;
+    private double mWeight;
+    private long mLastTimestamp;
+
+    public ContinuousArmaRssiFilter() {
+    }
+
+    @Override
+    public synchronized void addMeasurement(Integer rssi) {
+        long now = System.currentTimeMillis();
+        if (mWeight > 0) {
+            // a clock set backwards counts as no time passing
+            long elapsed = Math.max(0, now - mLastTimestamp);
+            double decay = Math.exp(-(double) elapsed / sTimeConstantMilliseconds);
+            mWeightedSum *= decay;
+            mWeight *= decay;
+        }
+        mWeightedSum += rssi;
+        mWeight += 1;
+        mLastTimestamp = now;
+        if (LogManager.isVerboseLoggingEnabled()) {
+            LogManager.d(TAG, "added rssi %s, estimate is now %s", rssi, mWeightedSum / mWeight);
+        }
+    }
+
+    @Override
+    public synchronized boolean noMeasurementsAvailable() {
+        return mWeight == 0
+                || System.currentTimeMillis() - mLastTimestamp > EXPIRATION_TIME_CONSTANTS * sTimeConstantMilliseconds;
+    }
+
+    @Override
+    public synchronized double calculateRssi() {
+        // the weight is at least 1 right after a sample, so the estimate never divides by a tiny sum
+        return mWeight == 0 ? Double.NaN : mWeightedSum / mWeight;
+    }
+
+    @Override
+    public synchronized void reset() {
+        mWeightedSum = 0;
+        mWeight = 0;
+        mLastTimestamp = 0;
+    }
+
+    /**
+     * Sets the time over which the weight of a sample falls to 1/e.  Shorter follows movement faster,
+     * longer gives a smoother value.  Defaults to 5 seconds.
+     * @param timeConstantMilliseconds
+     */
+    public static void setTimeConstantMilliseconds(long timeConstantMilliseconds) {
+        sTimeConstantMilliseconds = timeConstantMilliseconds;
+    }
+
+    public static long getTimeConstantMilliseconds() {
+        return sTimeConstantMilliseconds;
+    }
+}
@@ -0,0 +1,373 @@
+package org.altbeacon.beacon.service;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.logging.LogManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Ranged beacon state kept in parallel primitive arrays, for regions with thousands of beacons.
+ *
+ * Each beacon owns a dense int slot.  Its rssi samples and their times live in a window of two
+ * shared pool arrays, next to arrays of last tracked times and tracked flags, and beacons are
+ * found through an open addressing table of slot numbers.  No object is created per detection or
+ * per beacon apart from the Beacon itself, which is kept only to be handed out with the results.
+ * The end of a cycle is one linear sweep over the slots, and evicted beacons are replaced by the
+ * last slot so the arrays stay dense.
+ *
+ * A window starts with {@link #INITIAL_WINDOW_SIZE} samples and doubles when it is full of samples
+ * that have not expired, so like {@link RunningAverageRssiFilter} it averages every sample of the
+ * expiration period whatever the rate of the beacon.  Grown windows are placed at the end of the
+ * pool, and the pool is compacted when the end is reached, so memory follows the number of
+ * samples held.  Results match the filter, except that beacons that are no longer tracked are
+ * evicted once their samples expire rather than when they are seen again.  Guarded by the store's
+ * own lock.
+ */
+class DenseRangeStore {
+    private static final String TAG = "DenseRangeStore";
+    static final int INITIAL_WINDOW_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 64;
+    // Larger windows are averaged from a histogram of the values a one byte rssi can take, like
+    // RunningAverageRssiFilter does, instead of by sorting
+    private static final int HISTOGRAM_MIN_COUNT = 64;
+    private static final int MIN_HISTOGRAM_RSSI = -128;
+
+    private int mCapacity;
+    private int mCount;
+    private Beacon[] mBeacons;
+    private boolean[] mTracked;
+    private long[] mLastTrackedTimes;
+    // window of each slot: mWindowCapacities[slot] entries of the pool from mWindowOffsets[slot],
+    // used as a ring of mWindowCounts[slot] samples starting at mWindowHeads[slot]
+    private int[] mWindowOffsets;
+    private int[] mWindowCapacities;
+    private int[] mWindowHeads;
+    private int[] mWindowCounts;
+    private int[] mRssis;
+    private long[] mTimestamps;
+    // pool entries handed out, and how many of them belong to a live window
+    private int mPoolUsed;
+    private int mPoolLive;
+    // slot + 1 of each beacon, 0 for an empty entry.  Never more than half full.
+    private int[] mTable;
+    private int[] mScratch = new int[INITIAL_WINDOW_SIZE];
+    private final int[] mHistogram = new int[256];
+
+    DenseRangeStore() {
+        allocate(INITIAL_CAPACITY);
+        mRssis = new int[INITIAL_CAPACITY * INITIAL_WINDOW_SIZE];
+        mTimestamps = new long[INITIAL_CAPACITY * INITIAL_WINDOW_SIZE];
+        mTable = new int[INITIAL_CAPACITY * 2];
+    }
+
+    synchronized void add(Beacon beacon) {
+        int slot = find(beacon);
+        if (slot < 0) {
+            if (mCount == mCapacity) {
+                grow();
+            }
+            slot = mCount++;
+            mWindowCapacities[slot] = 0;
+            mWindowOffsets[slot] = reserve(INITIAL_WINDOW_SIZE);
+            mWindowCapacities[slot] = INITIAL_WINDOW_SIZE;
+            mWindowHeads[slot] = 0;
+            mWindowCounts[slot] = 0;
+            mTracked[slot] = true;
+            insert(beacon, slot);
+        }
+        mBeacons[slot] = beacon;
+        int rssi = beacon.getRssi();
+        // Filter out unreasonable values, like RangedBeacon
+        if (rssi != 127) {
+            long now = System.currentTimeMillis();
+            mTracked[slot] = true;
+            mLastTrackedTimes[slot] = now;
+            int count = mWindowCounts[slot];
+            if (count == mWindowCapacities[slot]) {
+                count = expire(slot, now, RunningAverageRssiFilter.getSampleExpirationMilliseconds());
+                if (count == mWindowCapacities[slot]) {
+                    growWindow(slot);
+                }
+            }
+            int index = mWindowOffsets[slot] + (mWindowHeads[slot] + count) % mWindowCapacities[slot];
+            mRssis[index] = rssi;
+            mTimestamps[index] = now;
+            mWindowCounts[slot] = count + 1;
+        }
+    }
+
+    /**
+     * Works like {@link RangeState#finalizeBeacons()} on the beacons of this store
+     */
+    synchronized Collection<Beacon> finalizeBeacons(boolean useTrackingCache) {
+        ArrayList<Beacon> finalizedBeacons = new ArrayList<Beacon>();
+        long now = System.currentTimeMillis();
+        long expiration = RunningAverageRssiFilter.getSampleExpirationMilliseconds();
+        long maxTrackingAge = RangedBeacon.maxTrackingAge;
+        int slot = 0;
+        while (slot < mCount) {
+            int count = expire(slot, now, expiration);
+            if (count == 0) {
+                evict(slot);
+                // the last slot moved here and is looked at next
+                continue;
+            }
+            if (mTracked[slot]) {
+                Beacon beacon = mBeacons[slot];
+                beacon.setRunningAverageRssi(clippedAverage(slot, count));
+                finalizedBeacons.add(beacon);
+            }
+            if (!useTrackingCache || now - mLastTrackedTimes[slot] > maxTrackingAge) {
+                mTracked[slot] = false;
+            }
+            slot++;
+        }
+        if (LogManager.isVerboseLoggingEnabled()) {
+            LogManager.d(TAG, "finalized %s of %s beacons", finalizedBeacons.size(), mCount);
+        }
+        return finalizedBeacons;
+    }
+
+    synchronized int size() {
+        return mCount;
+    }
+
+    // Drops the expired samples at the start of the window and returns how many are left
+    private int expire(int slot, long now, long expiration) {
+        int base = mWindowOffsets[slot];
+        int capacity = mWindowCapacities[slot];
+        int head = mWindowHeads[slot];
+        int count = mWindowCounts[slot];
+        while (count > 0 && now - mTimestamps[base + head] >= expiration) {
+            head = (head + 1) % capacity;
+            count--;
+        }
+        mWindowHeads[slot] = head;
+        mWindowCounts[slot] = count;
+        return count;
+    }
+
+    // The average of RunningAverageRssiFilter, which leaves out the lowest and highest tenth
+    private double clippedAverage(int slot, int count) {
+        int startIndex = 0;
+        int endIndex = count - 1;
+        if (count > 2) {
+            startIndex = count / 10 + 1;
+            endIndex = count - count / 10 - 2;
+        }
+        double sum = count > HISTOGRAM_MIN_COUNT ? sumFromHistogram(slot, count, startIndex, endIndex) : Double.NaN;
+        if (Double.isNaN(sum)) {
+            sum = sumBySorting(slot, count, startIndex, endIndex);
+        }
+        return sum / (endIndex - startIndex + 1);
+    }
+
+    // Sum of the values ranked startIndex to endIndex, or NaN if a value is outside the histogram
+    private double sumFromHistogram(int slot, int count, int startIndex, int endIndex) {
+        int base = mWindowOffsets[slot];
+        int end = base + mWindowCapacities[slot];
+        int index = base + mWindowHeads[slot];
+        int[] histogram = mHistogram;
+        int lowest = histogram.length;
+        int highest = -1;
+        boolean inRange = true;
+        for (int i = 0; i < count; i++) {
+            int bucket = mRssis[index] - MIN_HISTOGRAM_RSSI;
+            if (bucket < 0 || bucket >= histogram.length) {
+                inRange = false;
+                break;
+            }
+            histogram[bucket]++;
+            lowest = Math.min(lowest, bucket);
+            highest = Math.max(highest, bucket);
+            if (++index == end) {
+                index = base;
+            }
+        }
+        double sum = 0;
+        int rank = 0;
+        // the buckets used are cleared for the next window
+        for (int bucket = lowest; bucket <= highest; bucket++) {
+            int bucketCount = histogram[bucket];
+            if (bucketCount == 0) {
+                continue;
+            }
+            histogram[bucket] = 0;
+            int first = Math.max(rank, startIndex);
+            int last = Math.min(rank + bucketCount - 1, endIndex);
+            if (first <= last) {
+                sum += (double) (bucket + MIN_HISTOGRAM_RSSI) * (last - first + 1);
+            }
+            rank += bucketCount;
+        }
+        return inRange ? sum : Double.NaN;
+    }
+
+    private double sumBySorting(int slot, int count, int startIndex, int endIndex) {
+        int base = mWindowOffsets[slot];
+        int capacity = mWindowCapacities[slot];
+        int head = mWindowHeads[slot];
+        int[] sorted = mScratch;
+        for (int i = 0; i < count; i++) {
+            sorted[i] = mRssis[base + (head + i) % capacity];
+        }
+        Arrays.sort(sorted, 0, count);
+        double sum = 0;
+        for (int i = startIndex; i <= endIndex; i++) {
+            sum += sorted[i];
+        }
+        return sum;
+    }
+
+    // Moves a full window to a new place in the pool with twice the room, oldest sample first
+    private void growWindow(int slot) {
+        int capacity = mWindowCapacities[slot];
+        int offset = reserve(capacity * 2);
+        // reserving may have compacted the pool, which moves the old window
+        int oldOffset = mWindowOffsets[slot];
+        int head = mWindowHeads[slot];
+        int count = mWindowCounts[slot];
+        for (int i = 0; i < count; i++) {
+            int from = oldOffset + (head + i) % capacity;
+            mRssis[offset + i] = mRssis[from];
+            mTimestamps[offset + i] = mTimestamps[from];
+        }
+        mPoolLive -= capacity;
+        mWindowOffsets[slot] = offset;
+        mWindowCapacities[slot] = capacity * 2;
+        mWindowHeads[slot] = 0;
+        if (mScratch.length < capacity * 2) {
+            mScratch = new int[capacity * 2];
+        }
+    }
+
+    // Returns the offset of size free pool entries, compacting or enlarging the pool if needed
+    private int reserve(int size) {
+        if (mPoolUsed + size > mRssis.length) {
+            int length = mRssis.length;
+            while (mPoolLive + size > length / 2) {
+                length *= 2;
+            }
+            int[] rssis = new int[length];
+            long[] timestamps = new long[length];
+            int used = 0;
+            for (int slot = 0; slot < mCount; slot++) {
+                int capacity = mWindowCapacities[slot];
+                System.arraycopy(mRssis, mWindowOffsets[slot], rssis, used, capacity);
+                System.arraycopy(mTimestamps, mWindowOffsets[slot], timestamps, used, capacity);
+                mWindowOffsets[slot] = used;
+                used += capacity;
+            }
+            mRssis = rssis;
+            mTimestamps = timestamps;
+            mPoolUsed = used;
+        }
+        int offset = mPoolUsed;
+        mPoolUsed += size;
+        mPoolLive += size;
+        return offset;
+    }
+
+    private void evict(int slot) {
+        remove(mBeacons[slot]);
+        mPoolLive -= mWindowCapacities[slot];
+        int last = --mCount;
+        if (slot != last) {
+            Beacon moved = mBeacons[last];
+            mBeacons[slot] = moved;
+            mTracked[slot] = mTracked[last];
+            mLastTrackedTimes[slot] = mLastTrackedTimes[last];
+            mWindowOffsets[slot] = mWindowOffsets[last];
+            mWindowCapacities[slot] = mWindowCapacities[last];
+            mWindowHeads[slot] = mWindowHeads[last];
+            mWindowCounts[slot] = mWindowCounts[last];
+            mTable[position(moved)] = slot + 1;
+        }
+        mBeacons[last] = null;
+    }
+
+    private int find(Beacon beacon) {
+        int mask = mTable.length - 1;
+        for (int i = hash(beacon) & mask; mTable[i] != 0; i = (i + 1) & mask) {
+            int slot = mTable[i] - 1;
+            if (mBeacons[slot].equals(beacon)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // The table entry of a beacon that is in the store
+    private int position(Beacon beacon) {
+        int mask = mTable.length - 1;
+        int i = hash(beacon) & mask;
+        while (!mBeacons[mTable[i] - 1].equals(beacon)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void insert(Beacon beacon, int slot) {
+        int mask = mTable.length - 1;
+        int i = hash(beacon) & mask;
+        while (mTable[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        mTable[i] = slot + 1;
+    }
+
+    private void remove(Beacon beacon) {
+        int mask = mTable.length - 1;
+        int hole = position(beacon);
+        mTable[hole] = 0;
+        // move later entries of the probe run back so lookups still reach them
+        for (int i = (hole + 1) & mask; mTable[i] != 0; i = (i + 1) & mask) {
+            int home = hash(mBeacons[mTable[i] - 1]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                mTable[hole] = mTable[i];
+                mTable[i] = 0;
+                hole = i;
+            }
+        }
+    }
+
+    private static int hash(Beacon beacon) {
+        int h = beacon.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        mCapacity = capacity;
+        mBeacons = new Beacon[capacity];
+        mTracked = new boolean[capacity];
+        mLastTrackedTimes = new long[capacity];
+        mWindowOffsets = new int[capacity];
+        mWindowCapacities = new int[capacity];
+        mWindowHeads = new int[capacity];
+        mWindowCounts = new int[capacity];
+    }
+
+    private void grow() {
+        Beacon[] beacons = mBeacons;
+        boolean[] tracked = mTracked;
+        long[] lastTrackedTimes = mLastTrackedTimes;
+        int[] windowOffsets = mWindowOffsets;
+        int[] windowCapacities = mWindowCapacities;
+        int[] windowHeads = mWindowHeads;
+        int[] windowCounts = mWindowCounts;
+        allocate(mCapacity * 2);
+        System.arraycopy(beacons, 0, mBeacons, 0, mCount);
+        System.arraycopy(tracked, 0, mTracked, 0, mCount);
+        System.arraycopy(lastTrackedTimes, 0, mLastTrackedTimes, 0, mCount);
+        System.arraycopy(windowOffsets, 0, mWindowOffsets, 0, mCount);
+        System.arraycopy(windowCapacities, 0, mWindowCapacities, 0, mCount);
+        System.arraycopy(windowHeads, 0, mWindowHeads, 0, mCount);
+        System.arraycopy(windowCounts, 0, mWindowCounts, 0, mCount);
+        mTable = new int[mCapacity * 2];
+        for (int slot = 0; slot < mCount; slot++) {
+            insert(mBeacons[slot], slot);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.altbeacon.beacon.service;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Region;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers what recent scan records decoded to, so byte-identical repeats from fast advertising
+ * beacons can skip parsing, GATT tracking and region matching.
+ *
+ * Entries are keyed by device address and the record bytes, and hold the tracked beacon together
+ * with the monitoring and ranging states its regions matched.  They are only valid within one
+ * generation: the service starts a new generation at the end of each scan cycle and whenever a
+ * region is added or removed, which discards everything cached before.
+ *
+ * The cache is direct mapped with a fixed number of slots, so a colliding record simply replaces
+ * the older entry.
+ */
+public class DuplicateAdvertisementCache {
+    private static final int DEFAULT_SIZE = 512;
+    private static boolean sEnabled = true;
+
+    private final AtomicReferenceArray<Entry> mEntries;
+    private final int mMask;
+    private final AtomicLong mGeneration = new AtomicLong();
+
+    /**
+     * Enables or disables duplicate suppression for services started after this call
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public DuplicateAdvertisementCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public DuplicateAdvertisementCache(int size) {
+        int slots = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+        mEntries = new AtomicReferenceArray<Entry>(slots);
+        mMask = slots - 1;
+    }
+
+    /**
+     * @return the current generation.  Read it before matching regions for a new entry.
+     */
+    public long getGeneration() {
+        return mGeneration.get();
+    }
+
+    /**
+     * Discards all entries, because the regions or the state they point to changed
+     */
+    public void invalidate() {
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * @return the entry for an identical record from the same device in the current generation,
+     * or null
+     */
+    public Entry get(BluetoothDevice device, byte[] scanRecord) {
+        String address = device == null ? null : device.getAddress();
+        int recordHash = Arrays.hashCode(scanRecord);
+        Entry entry = mEntries.get(index(address, recordHash));
+        if (entry != null && entry.mGeneration == mGeneration.get() && entry.mRecordHash == recordHash
+                && (address == null ? entry.mAddress == null : address.equals(entry.mAddress))
+                && Arrays.equals(entry.mScanRecord, scanRecord)) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the outcome of processing a record
+     * @param generation the generation read before the regions were matched
+     */
+    public void put(BluetoothDevice device, byte[] scanRecord, Beacon beacon,
+                    List<Region> monitoredRegions, List<MonitorState> monitorStates,
+                    List<RangeState> rangeStates, long generation) {
+        if (generation != mGeneration.get()) {
+            // regions changed while this record was processed, so the matches may be stale
+            return;
+        }
+        String address = device == null ? null : device.getAddress();
+        int recordHash = Arrays.hashCode(scanRecord);
+        Entry entry = new Entry(address, scanRecord.clone(), recordHash, beacon,
+                monitoredRegions.toArray(new Region[monitoredRegions.size()]),
+                monitorStates.toArray(new MonitorState[monitorStates.size()]),
+                rangeStates.toArray(new RangeState[rangeStates.size()]), generation);
+        mEntries.set(index(address, recordHash), entry);
+    }
+
+    private int index(String address, int recordHash) {
+        int hash = (address == null ? 0 : address.hashCode()) * 31 + recordHash;
+        hash ^= hash >>> 16;
+        return hash & mMask;
+    }
+
+    /**
+     * Outcome of processing one scan record.  Immutable, so it can be read without locking.
+     */
+    public static final class Entry {
+        private final String mAddress;
+        private final byte[] mScanRecord;
+        private final int mRecordHash;
+        private final long mGeneration;
+        final Beacon beacon;
+        final Region[] monitoredRegions;
+        final MonitorState[] monitorStates;
+        final RangeState[] rangeStates;
+
+        Entry(String address, byte[] scanRecord, int recordHash, Beacon beacon,
+              Region[] monitoredRegions, MonitorState[] monitorStates, RangeState[] rangeStates,
+              long generation) {
+            mAddress = address;
+            mScanRecord = scanRecord;
+            mRecordHash = recordHash;
+            this.beacon = beacon;
+            this.monitoredRegions = monitoredRegions;
+            this.monitorStates = monitorStates;
+            this.rangeStates = rangeStates;
+            mGeneration = generation;
+        }
+    }
+}
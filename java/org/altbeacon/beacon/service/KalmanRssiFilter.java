@@ -0,0 +1,147 @@
+package org.altbeacon.beacon.service;
+
+import org.altbeacon.beacon.logging.LogManager;
+
+/**
+ * This filter estimates the rssi with a one dimensional Kalman filter.  The rssi is modelled as
+ * a random walk, so a beacon that stays put is averaged over a long stretch of samples, and a
+ * change detector lets the estimate jump when the beacon moves: a two sided cumulative sum of the
+ * normalized innovations, the differences between each sample and the estimate, which crosses its
+ * threshold after a few samples that all lie on one side.  The uncertainty of the estimate is
+ * then raised so the next samples move it quickly.  The process noise is per second, so the
+ * averaging stretch is the same length of time whatever the sample rate.
+ *
+ * The measurement noise differs between beacons and places, so it is learned per beacon from
+ * the innovations: their spread beyond what the filter's own uncertainty explains is taken as
+ * the noise of the measurements.
+ *
+ * Each sample costs a fixed number of arithmetic operations and the filter holds a handful of
+ * doubles.  Like the running average filter, it reports that no measurements are available once
+ * no sample has arrived for the sample expiration time.
+ */
+public class KalmanRssiFilter implements ResettableRssiFilter {
+
+    private static final String TAG = "KalmanRssiFilter";
+    public static final long DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS = 20000; /* 20 seconds */
+    // variance the rssi gains per second, in dB^2/s
+    public static final double DEFAULT_PROCESS_NOISE = 0.01;
+    private static final double INITIAL_MEASUREMENT_NOISE = 16.0;
+    private static final double MIN_MEASUREMENT_NOISE = 1.0;
+    private static final double MAX_MEASUREMENT_NOISE = 400.0;
+    // innovations beyond this many standard deviations are treated as outliers
+    private static final double INNOVATION_LIMIT = 2.5;
+    private static final double NOISE_SAMPLE_LIMIT = 4.0;
+    // how quickly the measurement noise estimate follows the innovations
+    private static final double NOISE_LEARNING_RATE = 0.05;
+    // change detection: standard deviations an innovation has to exceed to count towards a change,
+    // the sum at which a change is detected, and the variance added then, in measurement noises
+    private static final double CHANGE_DRIFT = 0.5;
+    private static final double CHANGE_THRESHOLD = 8.0;
+    private static final double CHANGE_VARIANCE = 4.0;
+    private static long sampleExpirationMilliseconds = DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS;
+    private static double sProcessNoise = DEFAULT_PROCESS_NOISE;
+
+    private boolean mInitialized;
+    private long mLastTimestamp;
+    private double mRssi;
+    private double mVariance;
+    private double mMeasurementNoise = INITIAL_MEASUREMENT_NOISE;
+    // cumulative sums of the innovations above and below the estimate
+    private double mRiseSum;
+    private double mFallSum;
+
+    public KalmanRssiFilter() {
+    }
+
+    @Override
+    public void addMeasurement(Integer rssi) {
+        addMeasurement(rssi, System.currentTimeMillis());
+    }
+
+    synchronized void addMeasurement(int rssi, long timestamp) {
+        if (!mInitialized) {
+            mRssi = rssi;
+            mVariance = mMeasurementNoise;
+            mRiseSum = 0;
+            mFallSum = 0;
+            mLastTimestamp = timestamp;
+            mInitialized = true;
+            return;
+        }
+        double dt = Math.max(0, timestamp - mLastTimestamp) / 1000.0;
+        mLastTimestamp = timestamp;
+
+        // predict
+        double variance = mVariance + sProcessNoise * dt;
+        double s = variance + mMeasurementNoise;
+        double rawInnovation = rssi - mRssi;
+
+        double normalized = rawInnovation / Math.sqrt(s);
+        mRiseSum = Math.max(0, mRiseSum + normalized - CHANGE_DRIFT);
+        mFallSum = Math.max(0, mFallSum - normalized - CHANGE_DRIFT);
+        if (mRiseSum > CHANGE_THRESHOLD || mFallSum > CHANGE_THRESHOLD) {
+            mRiseSum = 0;
+            mFallSum = 0;
+            variance += CHANGE_VARIANCE * mMeasurementNoise;
+            s = variance + mMeasurementNoise;
+            if (LogManager.isVerboseLoggingEnabled()) {
+                LogManager.d(TAG, "rssi change detected at %s, estimate %s", rssi, mRssi);
+            }
+        }
+
+        // Multipath fades produce samples far outside the normal spread, so innovations are limited
+        // to a few standard deviations before they move the estimate or the noise
+        double limit = INNOVATION_LIMIT * Math.sqrt(s);
+        double innovation = Math.max(-limit, Math.min(limit, rawInnovation));
+
+        // learn the measurement noise from the part of the innovation the prediction does not
+        // explain.  A tighter limit here would make the noise look smaller than it is.
+        double noiseSample = Math.min(rawInnovation * rawInnovation, NOISE_SAMPLE_LIMIT * NOISE_SAMPLE_LIMIT * s);
+        double noise = mMeasurementNoise + NOISE_LEARNING_RATE * (noiseSample - variance - mMeasurementNoise);
+        mMeasurementNoise = Math.max(MIN_MEASUREMENT_NOISE, Math.min(MAX_MEASUREMENT_NOISE, noise));
+
+        // update
+        double gain = variance / (variance + mMeasurementNoise);
+        mRssi += gain * innovation;
+        mVariance = (1 - gain) * variance;
+        if (LogManager.isVerboseLoggingEnabled()) {
+            LogManager.d(TAG, "added rssi %s, estimate %s, noise %s", rssi, mRssi, mMeasurementNoise);
+        }
+    }
+
+    @Override
+    public synchronized boolean noMeasurementsAvailable() {
+        return !mInitialized || System.currentTimeMillis() - mLastTimestamp >= sampleExpirationMilliseconds;
+    }
+
+    @Override
+    public synchronized double calculateRssi() {
+        return mInitialized ? mRssi : Double.NaN;
+    }
+
+    @Override
+    public synchronized void reset() {
+        mInitialized = false;
+        mMeasurementNoise = INITIAL_MEASUREMENT_NOISE;
+    }
+
+    /**
+     * @return the learned variance of the measurements, in dB^2
+     */
+    public synchronized double getMeasurementNoise() {
+        return mMeasurementNoise;
+    }
+
+    public static void setSampleExpirationMilliseconds(long newSampleExpirationMilliseconds) {
+        sampleExpirationMilliseconds = newSampleExpirationMilliseconds;
+    }
+
+    /**
+     * Sets how much the rssi is expected to drift between changes the filter detects.  Higher
+     * values follow slow movement faster, lower values give a smoother estimate.
+     * @param processNoise variance the rssi gains per second in dB^2/s, 0.01 by default
+     */
+    public static void setProcessNoise(double processNoise) {
+        sProcessNoise = processNoise;
+    }
+}
@@ -23,47 +23,111 @@
  */
 package org.altbeacon.beacon.service;
 
-import org.altbeacon.beacon.BeaconManager;
+import org.altbeacon.beacon.Region;
 import org.altbeacon.beacon.logging.LogManager;
 
 public class MonitorState {
     private static final String TAG = "MonitorState";
     private boolean inside = false;
     private long lastSeenTime = 0l;
+    // unlike lastSeenTime this survives an exit, so the outage that caused it can be learned
+    private long lastDetectionTime = 0l;
     private final Callback callback;
+    private final Region region;
+    private final AdaptiveExitPeriod exitPeriod = new AdaptiveExitPeriod();
+
+    // links of the RegionExitWheel, guarded by the wheel
+    volatile boolean mExitScheduled;
+    long mExitTick;
+    MonitorState mExitNext;
+    MonitorState mExitPrevious;
 
     public MonitorState(Callback c) {
+        this(c, null);
+    }
+
+    public MonitorState(Callback c, Region region) {
         callback = c;
+        this.region = region;
     }
 
     public Callback getCallback() {
         return callback;
     }
 
+    /**
+     * @return the monitored region, if it was given when this state was created
+     */
+    public Region getRegion() {
+        return region;
+    }
+
+    public synchronized long getLastSeenTime() {
+        return lastSeenTime;
+    }
+
+    /**
+     * @return the time after which the region is exited unless its beacons are seen again, or 0
+     * if it is not inside
+     */
+    public synchronized long getExitDeadline() {
+        if (!inside || lastSeenTime == 0) {
+            return 0;
+        }
+        // isNewlyOutside requires the exit period to be exceeded, not just reached
+        return lastSeenTime + exitPeriod.getExitPeriod() + 1;
+    }
+
+    /**
+     * @return how long the region may go without detections before it is exited
+     */
+    public synchronized long getExitPeriod() {
+        return exitPeriod.getExitPeriod();
+    }
+
     // returns true if it is newly inside
-    public boolean markInside() {
-        lastSeenTime = System.currentTimeMillis();
+    public synchronized boolean markInside() {
+        return markInside(System.currentTimeMillis());
+    }
+
+    synchronized boolean markInside(long now) {
+        if (lastDetectionTime > 0) {
+            if (inside) {
+                exitPeriod.addGap(now - lastDetectionTime, now);
+            }
+            else {
+                // the region was exited during this gap, which the period has to learn to cover
+                exitPeriod.addExitGap(now - lastDetectionTime, now);
+            }
+        }
+        lastDetectionTime = now;
+        lastSeenTime = now;
         if (!inside) {
             inside = true;
             return true;
         }
         return false;
     }
-    public boolean isNewlyOutside() {
+
+    public synchronized boolean isNewlyOutside() {
+        return isNewlyOutside(System.currentTimeMillis());
+    }
+
+    synchronized boolean isNewlyOutside(long now) {
         if (inside) {
-            if (lastSeenTime > 0 && System.currentTimeMillis() - lastSeenTime > BeaconManager.getRegionExitPeriod()) {
+            if (lastSeenTime > 0 && now - lastSeenTime > exitPeriod.getExitPeriod()) {
                 inside = false;
                 LogManager.d(TAG, "We are newly outside the region because the lastSeenTime of %s "
                                 + "was %s seconds ago, and that is over the expiration duration "
-                                + "of %s", lastSeenTime, System.currentTimeMillis() - lastSeenTime,
-                        BeaconManager.getRegionExitPeriod());
+                                + "of %s", lastSeenTime, now - lastSeenTime,
+                        exitPeriod.getExitPeriod());
                 lastSeenTime = 0l;
                 return true;
             }
         }
         return false;
     }
-    public boolean isInside() {
+    public synchronized boolean isInside() {
         if (inside) {
             if (!isNewlyOutside()) {
                 return true;
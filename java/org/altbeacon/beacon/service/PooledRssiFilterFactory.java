@@ -0,0 +1,89 @@
+package org.altbeacon.beacon.service;
+
+import org.altbeacon.beacon.logging.LogManager;
+
+import java.lang.reflect.Constructor;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates filters of one class, keeping a bounded pool of recycled filters to hand out again.
+ *
+ * The constructor is looked up once, and filters implementing {@link ResettableRssiFilter} are
+ * reset and pooled when recycled, so most new beacons get a filter from the pool without
+ * reflection or allocation.  Other filters are left to the garbage collector.
+ */
+public class PooledRssiFilterFactory implements RssiFilterFactory {
+    private static final String TAG = "PooledRssiFilterFactory";
+    public static final int DEFAULT_POOL_SIZE = 64;
+
+    private final Class<? extends RssiFilter> mFilterClass;
+    private final Constructor<? extends RssiFilter> mConstructor;
+    private final int mPoolSize;
+    private final Queue<RssiFilter> mPool = new ConcurrentLinkedQueue<RssiFilter>();
+    private final AtomicInteger mPooledCount = new AtomicInteger();
+
+    public PooledRssiFilterFactory(Class<? extends RssiFilter> filterClass) {
+        this(filterClass, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param filterClass a filter class with a public constructor without arguments
+     * @param poolSize the most recycled filters kept
+     */
+    public PooledRssiFilterFactory(Class<? extends RssiFilter> filterClass, int poolSize) {
+        mFilterClass = filterClass;
+        mPoolSize = poolSize;
+        Constructor<? extends RssiFilter> constructor = null;
+        try {
+            constructor = filterClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            LogManager.e(TAG, "RssiFilterImplClass %s has no public constructor without arguments", filterClass.getName());
+        }
+        mConstructor = constructor;
+    }
+
+    public Class<? extends RssiFilter> getFilterClass() {
+        return mFilterClass;
+    }
+
+    @Override
+    public RssiFilter create() {
+        RssiFilter filter = mPool.poll();
+        if (filter != null) {
+            mPooledCount.decrementAndGet();
+            return filter;
+        }
+        if (mConstructor == null) {
+            return null;
+        }
+        try {
+            return mConstructor.newInstance();
+        } catch (Exception e) {
+            LogManager.e(TAG, "Could not construct RssiFilterImplClass %s", mFilterClass.getName());
+            return null;
+        }
+    }
+
+    @Override
+    public void recycle(RssiFilter filter) {
+        if (!(filter instanceof ResettableRssiFilter) || filter.getClass() != mFilterClass) {
+            return;
+        }
+        // claim room first so concurrent recycling cannot grow the pool past its size
+        if (mPooledCount.incrementAndGet() > mPoolSize) {
+            mPooledCount.decrementAndGet();
+            return;
+        }
+        ((ResettableRssiFilter) filter).reset();
+        mPool.offer(filter);
+    }
+
+    /**
+     * @return the number of filters waiting to be reused
+     */
+    public int getPooledCount() {
+        return mPooledCount.get();
+    }
+}
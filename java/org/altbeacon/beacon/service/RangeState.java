@@ -24,21 +24,59 @@
 package org.altbeacon.beacon.service;
 
 import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.BeaconManager;
+import org.altbeacon.beacon.Region;
 import org.altbeacon.beacon.logging.LogManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Beacons seen in a ranged region across scan cycles.
+ *
+ * The table lives for as long as the region is ranged.  Scan workers update it concurrently,
+ * locking only the entry they touch, while the cycle generation tells the end-of-cycle pass which
+ * entries were updated after it started.  That pass walks the table in place and evicts entries
+ * that no longer have measurements, so a cycle does not copy the table.
+ *
+ * When the dense store is enabled and the default rssi filter is in use, beacons are kept in a
+ * {@link DenseRangeStore} instead, which suits regions with thousands of beacons.
+ */
 public class RangeState {
     private static final String TAG = "RangeState";
+    // generation given to entries removed from the table
+    private static final long EVICTED = -1;
     private final Callback mCallback;
-    private Map<Beacon,RangedBeacon> mRangedBeacons = new HashMap<Beacon,RangedBeacon>();
+    private final ConcurrentMap<Beacon,RangedBeacon> mRangedBeacons = new ConcurrentHashMap<Beacon,RangedBeacon>();
+    private final AtomicLong mGeneration = new AtomicLong();
+    // beacons as last delivered in a delta, only used by the end-of-cycle pass
+    private final Map<Beacon,ReportedBeacon> mReportedBeacons = new HashMap<Beacon,ReportedBeacon>();
     private static boolean UseTrackingCache = false;
+    private static boolean sDenseStoreEnabled = false;
+    // null unless beacons are kept in the dense store instead of mRangedBeacons
+    private final DenseRangeStore mDenseStore;
 
     public RangeState(Callback c) {
         mCallback = c;
+        mDenseStore = sDenseStoreEnabled && usesDefaultFilter() ? new DenseRangeStore() : null;
+    }
+
+    // The dense store computes the running average itself, so it cannot stand in for other filters
+    private static boolean usesDefaultFilter() {
+        RssiFilterFactory factory = BeaconManager.getRssiFilterFactory();
+        if (factory instanceof PooledRssiFilterFactory
+                && ((PooledRssiFilterFactory) factory).getFilterClass() == RunningAverageRssiFilter.class) {
+            return true;
+        }
+        LogManager.w(TAG, "The dense range store only works with RunningAverageRssiFilter and is not used");
+        return false;
     }
 
     public Callback getCallback() {
@@ -46,26 +84,68 @@ public class RangeState {
     }
 
     public void addBeacon(Beacon beacon) {
-        if (mRangedBeacons.containsKey(beacon)) {
+        if (mDenseStore != null) {
+            mDenseStore.add(beacon);
+            return;
+        }
+        while (true) {
             RangedBeacon rangedBeacon = mRangedBeacons.get(beacon);
-            LogManager.d(TAG, "adding %s to existing range for: %s", beacon, rangedBeacon);
-            rangedBeacon.updateBeacon(beacon);
+            if (rangedBeacon == null) {
+                RangedBeacon newRangedBeacon = new RangedBeacon(beacon);
+                newRangedBeacon.mGeneration = mGeneration.get();
+                rangedBeacon = mRangedBeacons.putIfAbsent(beacon, newRangedBeacon);
+                if (rangedBeacon == null) {
+                    LogManager.d(TAG, "adding %s to new rangedBeacon", beacon);
+                    return;
+                }
+                // another thread added the beacon first
+                newRangedBeacon.recycle();
+            }
+            synchronized (rangedBeacon) {
+                if (rangedBeacon.mGeneration != EVICTED) {
+                    LogManager.d(TAG, "adding %s to existing range for: %s", beacon, rangedBeacon);
+                    rangedBeacon.updateBeacon(beacon);
+                    rangedBeacon.mGeneration = mGeneration.get();
+                    return;
+                }
+            }
+            // finalizeBeacons dropped the entry while we were waiting for it, so start a new one
         }
-        else {
-            LogManager.d(TAG, "adding %s to new rangedBeacon", beacon);
-            mRangedBeacons.put(beacon, new RangedBeacon(beacon));
+    }
+
+    /**
+     * Adds several detections at once
+     * @param beacons
+     */
+    public void addBeacons(Collection<Beacon> beacons) {
+        for (Beacon beacon : beacons) {
+            addBeacon(beacon);
         }
     }
 
+    /**
+     * @return the number of the current cycle, which is advanced by each call to
+     * {@link #finalizeBeacons()}
+     */
+    public long getGeneration() {
+        return mGeneration.get();
+    }
+
     // returns a list of beacons that are tracked, and then removes any from the list that should not
     // be there for the next cycle
     public synchronized Collection<Beacon> finalizeBeacons() {
-        Map<Beacon,RangedBeacon> newRangedBeacons = new HashMap<Beacon,RangedBeacon>();
         ArrayList<Beacon> finalizedBeacons = new ArrayList<Beacon>();
-
-        synchronized (mRangedBeacons) {
-            for (Beacon beacon : mRangedBeacons.keySet()) {
-                RangedBeacon rangedBeacon = mRangedBeacons.get(beacon);
+        // Updates from here on count towards the next cycle
+        long nextGeneration = mGeneration.incrementAndGet();
+        if (mDenseStore != null) {
+            Collection<Beacon> denseBeacons = mDenseStore.finalizeBeacons(UseTrackingCache);
+            Beacon.calculateDistances(denseBeacons);
+            return denseBeacons;
+        }
+        Iterator<RangedBeacon> iterator = mRangedBeacons.values().iterator();
+        while (iterator.hasNext()) {
+            RangedBeacon rangedBeacon = iterator.next();
+            synchronized (rangedBeacon) {
                 if (rangedBeacon.isTracked()) {
                     rangedBeacon.commitMeasurements(); // calculates accuracy
                     if (!rangedBeacon.noMeasurementsAvailable()) {
@@ -74,26 +154,88 @@ public class RangeState {
                 }
                 // If we still have useful measurements, keep it around but mark it as not
                 // tracked anymore so we don't pass it on as visible unless it is seen again
-                if (!rangedBeacon.noMeasurementsAvailable() == true) {
+                if (!rangedBeacon.noMeasurementsAvailable()) {
                     //if TrackingCache is enabled, allow beacon to not receive
-                    //measurements for a certain amount of time
-                    if (!UseTrackingCache || rangedBeacon.isExpired())
+                    //measurements for a certain amount of time.  A beacon seen since this pass
+                    //started is already tracked for the next cycle.
+                    if ((!UseTrackingCache || rangedBeacon.isExpired())
+                            && rangedBeacon.mGeneration != nextGeneration) {
                         rangedBeacon.setTracked(false);
-                    newRangedBeacons.put(beacon, rangedBeacon);
+                    }
                 }
                 else {
                     LogManager.d(TAG, "Dumping beacon from RangeState because it has no recent measurements.");
+                    rangedBeacon.mGeneration = EVICTED;
+                    iterator.remove();
+                    // addBeacon checks for EVICTED under the same lock, so nothing uses the filter now
+                    rangedBeacon.recycle();
                 }
             }
-            mRangedBeacons = newRangedBeacons;
         }
-
+        // every distance of the cycle in one call rather than one by one as they are asked for
+        Beacon.calculateDistances(finalizedBeacons);
         return finalizedBeacons;
     }
 
+    /**
+     * Finalizes the cycle like {@link #finalizeBeacons()} and returns how the ranged beacons
+     * differ from those last returned by this method
+     * @param region the region of this state
+     */
+    public synchronized RangingDelta finalizeDelta(Region region) {
+        Collection<Beacon> beacons = finalizeBeacons();
+        int rssiThreshold = RangingDelta.getRssiThreshold();
+        double distanceThreshold = RangingDelta.getDistanceThreshold();
+        List<Beacon> entered = new ArrayList<Beacon>();
+        List<Beacon> changed = new ArrayList<Beacon>();
+        List<Beacon> left = new ArrayList<Beacon>();
+        Map<Beacon,ReportedBeacon> previous = new HashMap<Beacon,ReportedBeacon>(mReportedBeacons);
+        for (Beacon beacon : beacons) {
+            ReportedBeacon reported = previous.remove(beacon);
+            if (reported == null) {
+                entered.add(beacon);
+                mReportedBeacons.put(beacon, new ReportedBeacon(beacon));
+            }
+            else if (Math.abs(filteredRssi(beacon) - reported.mRssi) >= rssiThreshold
+                    || Math.abs(beacon.getDistance() - reported.mDistance) >= distanceThreshold) {
+                changed.add(beacon);
+                mReportedBeacons.put(beacon, new ReportedBeacon(beacon));
+            }
+        }
+        for (ReportedBeacon reported : previous.values()) {
+            left.add(reported.mBeacon);
+            mReportedBeacons.remove(reported.mBeacon);
+        }
+        return new RangingDelta(region, entered, changed, left);
+    }
+
+    // The rssi the distance is based on.  Single packets vary too much to tell a change.
+    private static double filteredRssi(Beacon beacon) {
+        Double runningAverage = beacon.getRunningAverageRssi();
+        return runningAverage != null ? runningAverage : beacon.getRssi();
+    }
+
     public static void setUseTrackingCache(boolean useTrackingCache) {
         RangeState.UseTrackingCache = useTrackingCache;
     }
 
+    public static void setDenseStoreEnabled(boolean enabled) {
+        sDenseStoreEnabled = enabled;
+    }
+
+    /**
+     * Values of a beacon when it was last delivered.  They are copied because the beacon object
+     * itself is updated by later cycles.
+     */
+    private static final class ReportedBeacon {
+        final Beacon mBeacon;
+        final double mRssi;
+        final double mDistance;
 
+        ReportedBeacon(Beacon beacon) {
+            mBeacon = beacon;
+            mRssi = filteredRssi(beacon);
+            mDistance = beacon.getDistance();
+        }
+    }
 }
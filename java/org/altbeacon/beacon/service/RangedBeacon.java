@@ -4,8 +4,6 @@ import org.altbeacon.beacon.Beacon;
 import org.altbeacon.beacon.BeaconManager;
 import org.altbeacon.beacon.logging.LogManager;
 
-import java.lang.reflect.Constructor;
-
 public class RangedBeacon {
 
     private static final String TAG = "RangedBeacon";
@@ -16,15 +14,17 @@ public class RangedBeacon {
     private static long sampleExpirationMilliseconds = DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS;
     private boolean mTracked = true;
     protected long lastTrackedTimeMillis = 0;
+    // cycle generation of the range state in which this beacon was last updated
+    long mGeneration;
     Beacon mBeacon;
     protected RssiFilter filter = null;
+    private final RssiFilterFactory mFilterFactory;
 
     public RangedBeacon(Beacon beacon) {
         //set RSSI filter
-        try {
-            Constructor cons = BeaconManager.getRssiFilterImplClass().getConstructors()[0];
-            filter = (RssiFilter)cons.newInstance();
-        } catch (Exception e) {
+        mFilterFactory = BeaconManager.getRssiFilterFactory();
+        filter = mFilterFactory.create();
+        if (filter == null) {
             LogManager.e(TAG, "Could not construct RssiFilterImplClass %s", BeaconManager.getRssiFilterImplClass().getName());
         }
         
@@ -93,4 +93,15 @@ public class RangedBeacon {
         return getTrackingAge() > maxTrackingAge;
     }
 
+    /**
+     * Returns the filter to the factory it came from.  The beacon must not be used afterwards.
+     */
+    void recycle() {
+        RssiFilter recycled = filter;
+        filter = null;
+        if (recycled != null) {
+            mFilterFactory.recycle(recycled);
+        }
+    }
+
 }
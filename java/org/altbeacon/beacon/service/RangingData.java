@@ -28,6 +28,7 @@ import java.util.Collection;
 
 import org.altbeacon.beacon.Beacon;
 import org.altbeacon.beacon.BeaconManager;
+import org.altbeacon.beacon.CompactParcel;
 import org.altbeacon.beacon.Region;
 import org.altbeacon.beacon.logging.LogManager;
 
@@ -36,6 +37,8 @@ import android.os.Parcelable;
 
 public class RangingData implements Parcelable {
     private static final String TAG = "RangingData";
+    private static final int FORMAT_PARCELABLES = 0;
+    private static final int FORMAT_COMPACT = 1;
     private final Collection<Beacon> beacons;
     private final Region region;
 
@@ -59,7 +62,15 @@ public class RangingData implements Parcelable {
     }
     public void writeToParcel(Parcel out, int flags) {
         LogManager.d(TAG, "writing RangingData");
-        out.writeParcelableArray(beacons.toArray(new Parcelable[0]), flags);
+        // beacon subclasses from custom parsers carry their own fields, so only plain beacons are compacted
+        if (CompactParcel.canEncode(beacons)) {
+            out.writeInt(FORMAT_COMPACT);
+            out.writeByteArray(CompactParcel.encodeBeacons(beacons));
+        }
+        else {
+            out.writeInt(FORMAT_PARCELABLES);
+            out.writeParcelableArray(beacons.toArray(new Parcelable[0]), flags);
+        }
         out.writeParcelable(region, flags);
         LogManager.d(TAG, "done writing RangingData");
 
@@ -78,10 +89,15 @@ public class RangingData implements Parcelable {
 
     private RangingData(Parcel in) {
         LogManager.d(TAG, "parsing RangingData");
-        Parcelable[] parcelables  = in.readParcelableArray(this.getClass().getClassLoader());
-        beacons = new ArrayList<Beacon>(parcelables.length);
-        for (int i = 0; i < parcelables.length; i++) {
-            beacons.add((Beacon)parcelables[i]);
+        if (in.readInt() == FORMAT_COMPACT) {
+            beacons = CompactParcel.decodeBeacons(in.createByteArray());
+        }
+        else {
+            Parcelable[] parcelables  = in.readParcelableArray(this.getClass().getClassLoader());
+            beacons = new ArrayList<Beacon>(parcelables.length);
+            for (int i = 0; i < parcelables.length; i++) {
+                beacons.add((Beacon)parcelables[i]);
+            }
         }
         region = in.readParcelable(this.getClass().getClassLoader());
     }
@@ -0,0 +1,152 @@
+package org.altbeacon.beacon.service;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.CompactParcel;
+import org.altbeacon.beacon.Region;
+import org.altbeacon.beacon.logging.LogManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ranging results of one scan cycle for all the regions ranged by an app, delivered together
+ * instead of as one <code>RangingData</code> per region.
+ *
+ * A beacon that is in several regions is written to the parcel once and referred to by index from
+ * each of them, so it is also a single object on the receiving side.
+ *
+ * Batched delivery is disabled by default.  Enable it with
+ * {@link org.altbeacon.beacon.BeaconManager#setRangingBatchDeliveryEnabled(boolean)}.
+ */
+public class RangingDataBatch implements Parcelable {
+    private static final String TAG = "RangingDataBatch";
+    private static final int FORMAT_PARCELABLES = 0;
+    private static final int FORMAT_COMPACT = 1;
+    private static boolean sEnabled = false;
+
+    private final List<Region> mRegions;
+    private final List<Collection<Beacon>> mBeacons;
+
+    /**
+     * Enables or disables batched delivery of ranging results
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public RangingDataBatch() {
+        mRegions = new ArrayList<Region>();
+        mBeacons = new ArrayList<Collection<Beacon>>();
+    }
+
+    public void add(Region region, Collection<Beacon> beacons) {
+        mRegions.add(region);
+        mBeacons.add(beacons);
+    }
+
+    /**
+     * @return the number of regions in the batch
+     */
+    public int size() {
+        return mRegions.size();
+    }
+
+    public Region getRegion(int index) {
+        return mRegions.get(index);
+    }
+
+    public Collection<Beacon> getBeacons(int index) {
+        return mBeacons.get(index);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        LogManager.d(TAG, "writing RangingDataBatch");
+        Map<Beacon, Integer> beaconIndexes = new IdentityHashMap<Beacon, Integer>();
+        List<Beacon> uniqueBeacons = new ArrayList<Beacon>();
+        int[][] regionIndexes = new int[mRegions.size()][];
+        for (int i = 0; i < mRegions.size(); i++) {
+            Collection<Beacon> beacons = mBeacons.get(i);
+            int[] indexes = new int[beacons.size()];
+            int j = 0;
+            for (Beacon beacon : beacons) {
+                Integer index = beaconIndexes.get(beacon);
+                if (index == null) {
+                    index = uniqueBeacons.size();
+                    beaconIndexes.put(beacon, index);
+                    uniqueBeacons.add(beacon);
+                }
+                indexes[j++] = index;
+            }
+            regionIndexes[i] = indexes;
+        }
+        if (CompactParcel.canEncode(uniqueBeacons)) {
+            out.writeInt(FORMAT_COMPACT);
+            out.writeByteArray(CompactParcel.encodeBeacons(uniqueBeacons));
+        }
+        else {
+            out.writeInt(FORMAT_PARCELABLES);
+            out.writeParcelableArray(uniqueBeacons.toArray(new Parcelable[uniqueBeacons.size()]), flags);
+        }
+        out.writeInt(mRegions.size());
+        for (int i = 0; i < mRegions.size(); i++) {
+            out.writeParcelable(mRegions.get(i), flags);
+            out.writeIntArray(regionIndexes[i]);
+        }
+        LogManager.d(TAG, "done writing RangingDataBatch");
+    }
+
+    public static final Parcelable.Creator<RangingDataBatch> CREATOR
+            = new Parcelable.Creator<RangingDataBatch>() {
+        public RangingDataBatch createFromParcel(Parcel in) {
+            return new RangingDataBatch(in);
+        }
+
+        public RangingDataBatch[] newArray(int size) {
+            return new RangingDataBatch[size];
+        }
+    };
+
+    private RangingDataBatch(Parcel in) {
+        LogManager.d(TAG, "parsing RangingDataBatch");
+        List<Beacon> uniqueBeacons;
+        if (in.readInt() == FORMAT_COMPACT) {
+            uniqueBeacons = CompactParcel.decodeBeacons(in.createByteArray());
+        }
+        else {
+            Parcelable[] parcelables = in.readParcelableArray(this.getClass().getClassLoader());
+            uniqueBeacons = new ArrayList<Beacon>(parcelables.length);
+            for (Parcelable parcelable : parcelables) {
+                uniqueBeacons.add((Beacon) parcelable);
+            }
+        }
+        int regionCount = in.readInt();
+        mRegions = new ArrayList<Region>(regionCount);
+        mBeacons = new ArrayList<Collection<Beacon>>(regionCount);
+        for (int i = 0; i < regionCount; i++) {
+            Region region = in.readParcelable(this.getClass().getClassLoader());
+            int[] indexes = in.createIntArray();
+            List<Beacon> beacons = new ArrayList<Beacon>(indexes.length);
+            for (int index : indexes) {
+                beacons.add(uniqueBeacons.get(index));
+            }
+            mRegions.add(region);
+            mBeacons.add(beacons);
+        }
+    }
+}
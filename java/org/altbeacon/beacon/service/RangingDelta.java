@@ -0,0 +1,165 @@
+package org.altbeacon.beacon.service;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.CompactParcel;
+import org.altbeacon.beacon.Region;
+import org.altbeacon.beacon.logging.LogManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The change in the beacons ranged in a region since the last delta delivered for it: beacons
+ * that entered, beacons whose signal or distance changed beyond the thresholds, and beacons that
+ * left.  Unchanged beacons are not included.
+ *
+ * Delta delivery is disabled by default.  Enable it with
+ * {@link org.altbeacon.beacon.BeaconManager#setDeltaRangingEnabled(boolean)}.
+ */
+public class RangingDelta implements Parcelable {
+    private static final String TAG = "RangingDelta";
+    private static final int FORMAT_PARCELABLES = 0;
+    private static final int FORMAT_COMPACT = 1;
+    private static boolean sEnabled = false;
+    private static int sRssiThreshold = 5;
+    private static double sDistanceThreshold = 0.5;
+
+    private final Region mRegion;
+    private final List<Beacon> mEntered;
+    private final List<Beacon> mChanged;
+    private final List<Beacon> mLeft;
+
+    /**
+     * Enables or disables delta delivery of ranging results
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Sets how far the running average RSSI of a beacon must move from the last delivered value
+     * to be reported as changed.  Defaults to 5 dBm.
+     * @param rssiThreshold
+     */
+    public static void setRssiThreshold(int rssiThreshold) {
+        sRssiThreshold = rssiThreshold;
+    }
+
+    public static int getRssiThreshold() {
+        return sRssiThreshold;
+    }
+
+    /**
+     * Sets how far the distance of a beacon must move from the last delivered value to be reported
+     * as changed.  Defaults to 0.5 meters.
+     * @param distanceThreshold
+     */
+    public static void setDistanceThreshold(double distanceThreshold) {
+        sDistanceThreshold = distanceThreshold;
+    }
+
+    public static double getDistanceThreshold() {
+        return sDistanceThreshold;
+    }
+
+    public RangingDelta(Region region, List<Beacon> entered, List<Beacon> changed, List<Beacon> left) {
+        mRegion = region;
+        mEntered = entered;
+        mChanged = changed;
+        mLeft = left;
+    }
+
+    public Region getRegion() {
+        return mRegion;
+    }
+
+    /**
+     * @return beacons that were not in the last delta for this region
+     */
+    public Collection<Beacon> getEntered() {
+        return mEntered;
+    }
+
+    /**
+     * @return beacons whose running average RSSI or distance moved beyond the thresholds
+     */
+    public Collection<Beacon> getChanged() {
+        return mChanged;
+    }
+
+    /**
+     * @return beacons that are no longer ranged, as they were last delivered
+     */
+    public Collection<Beacon> getLeft() {
+        return mLeft;
+    }
+
+    public boolean isEmpty() {
+        return mEntered.isEmpty() && mChanged.isEmpty() && mLeft.isEmpty();
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        LogManager.d(TAG, "writing RangingDelta");
+        out.writeParcelable(mRegion, flags);
+        out.writeInt(mEntered.size());
+        out.writeInt(mChanged.size());
+        List<Beacon> beacons = new ArrayList<Beacon>(mEntered.size() + mChanged.size() + mLeft.size());
+        beacons.addAll(mEntered);
+        beacons.addAll(mChanged);
+        beacons.addAll(mLeft);
+        if (CompactParcel.canEncode(beacons)) {
+            out.writeInt(FORMAT_COMPACT);
+            out.writeByteArray(CompactParcel.encodeBeacons(beacons));
+        }
+        else {
+            out.writeInt(FORMAT_PARCELABLES);
+            out.writeParcelableArray(beacons.toArray(new Parcelable[beacons.size()]), flags);
+        }
+    }
+
+    public static final Parcelable.Creator<RangingDelta> CREATOR
+            = new Parcelable.Creator<RangingDelta>() {
+        public RangingDelta createFromParcel(Parcel in) {
+            return new RangingDelta(in);
+        }
+
+        public RangingDelta[] newArray(int size) {
+            return new RangingDelta[size];
+        }
+    };
+
+    private RangingDelta(Parcel in) {
+        LogManager.d(TAG, "parsing RangingDelta");
+        mRegion = in.readParcelable(this.getClass().getClassLoader());
+        int enteredCount = in.readInt();
+        int changedCount = in.readInt();
+        List<Beacon> beacons;
+        if (in.readInt() == FORMAT_COMPACT) {
+            beacons = CompactParcel.decodeBeacons(in.createByteArray());
+        }
+        else {
+            Parcelable[] parcelables = in.readParcelableArray(this.getClass().getClassLoader());
+            beacons = new ArrayList<Beacon>(parcelables.length);
+            for (Parcelable parcelable : parcelables) {
+                beacons.add((Beacon) parcelable);
+            }
+        }
+        mEntered = new ArrayList<Beacon>(beacons.subList(0, enteredCount));
+        mChanged = new ArrayList<Beacon>(beacons.subList(enteredCount, enteredCount + changedCount));
+        mLeft = new ArrayList<Beacon>(beacons.subList(enteredCount + changedCount, beacons.size()));
+    }
+}
@@ -0,0 +1,157 @@
+package org.altbeacon.beacon.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timer wheel holding the time at which each monitored region will be exited if its
+ * beacons are not seen again.
+ *
+ * Time is cut into ticks, and a region waiting to expire is linked into the slot of the tick in
+ * which its deadline falls, so scheduling and cancelling are constant time and advancing the wheel
+ * only looks at the slots of the ticks that passed.  Deadlines more than one turn of the wheel
+ * away stay in their slot until the turn in which they fall.
+ *
+ * Regions are not moved each time they are seen.  A region that expires is handed back to the
+ * caller, which schedules it again if it was seen in the meantime.
+ */
+class RegionExitWheel {
+    static final long DEFAULT_TICK_MILLIS = 250l;
+    private static final int DEFAULT_SLOT_COUNT = 128;
+
+    private final long mTickMillis;
+    private final MonitorState[] mSlots;
+    private final int mMask;
+    // the last tick whose slot was processed
+    private long mCurrentTick;
+    private int mSize;
+    private boolean mTicking;
+
+    RegionExitWheel() {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * @param tickMillis resolution of the deadlines
+     * @param slotCount number of slots, rounded up to a power of two
+     */
+    RegionExitWheel(long tickMillis, int slotCount) {
+        int slots = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        mTickMillis = tickMillis;
+        mSlots = new MonitorState[slots];
+        mMask = slots - 1;
+    }
+
+    long getTickMillis() {
+        return mTickMillis;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Schedules the region of a monitor state to expire at a deadline, moving it if it was already
+     * scheduled
+     * @param now current time, used to start the wheel
+     * @return true if the wheel was idle and the caller must start calling {@link #advance(long)}
+     */
+    synchronized boolean schedule(MonitorState state, long deadline, long now) {
+        boolean start = false;
+        if (!mTicking) {
+            mTicking = true;
+            mCurrentTick = now / mTickMillis;
+            start = true;
+        }
+        if (state.mExitScheduled) {
+            unlink(state);
+        }
+        // round up so a region never expires before its deadline
+        long tick = Math.max((deadline + mTickMillis - 1) / mTickMillis, mCurrentTick + 1);
+        int slot = (int) (tick & mMask);
+        state.mExitTick = tick;
+        state.mExitPrevious = null;
+        state.mExitNext = mSlots[slot];
+        if (state.mExitNext != null) {
+            state.mExitNext.mExitPrevious = state;
+        }
+        mSlots[slot] = state;
+        state.mExitScheduled = true;
+        mSize++;
+        return start;
+    }
+
+    synchronized void cancel(MonitorState state) {
+        if (state.mExitScheduled) {
+            unlink(state);
+        }
+    }
+
+    /**
+     * Processes the ticks up to the given time
+     * @return the states whose deadline has passed, which are no longer scheduled
+     */
+    synchronized List<MonitorState> advance(long now) {
+        List<MonitorState> expired = new ArrayList<MonitorState>();
+        long targetTick = now / mTickMillis;
+        // after a long pause every slot is visited once rather than once per missed tick
+        long firstTick = Math.max(mCurrentTick + 1, targetTick - mMask);
+        for (long tick = firstTick; tick <= targetTick && mSize > 0; tick++) {
+            MonitorState state = mSlots[(int) (tick & mMask)];
+            while (state != null) {
+                MonitorState next = state.mExitNext;
+                if (state.mExitTick <= targetTick) {
+                    unlink(state);
+                    expired.add(state);
+                }
+                state = next;
+            }
+        }
+        mCurrentTick = Math.max(mCurrentTick, targetTick);
+        return expired;
+    }
+
+    /**
+     * Called after each {@link #advance(long)}.  Stops the wheel when nothing is scheduled, so the
+     * next {@link #schedule(MonitorState, long, long)} starts it again.
+     * @return true if the caller should advance the wheel again after one tick
+     */
+    synchronized boolean continueTicking() {
+        if (mSize == 0) {
+            mTicking = false;
+        }
+        return mTicking;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < mSlots.length; i++) {
+            MonitorState state = mSlots[i];
+            while (state != null) {
+                MonitorState next = state.mExitNext;
+                state.mExitScheduled = false;
+                state.mExitNext = null;
+                state.mExitPrevious = null;
+                state = next;
+            }
+            mSlots[i] = null;
+        }
+        mSize = 0;
+        mTicking = false;
+    }
+
+    private void unlink(MonitorState state) {
+        if (state.mExitPrevious != null) {
+            state.mExitPrevious.mExitNext = state.mExitNext;
+        }
+        else {
+            mSlots[(int) (state.mExitTick & mMask)] = state.mExitNext;
+        }
+        if (state.mExitNext != null) {
+            state.mExitNext.mExitPrevious = state.mExitPrevious;
+        }
+        state.mExitNext = null;
+        state.mExitPrevious = null;
+        state.mExitScheduled = false;
+        mSize--;
+    }
+}
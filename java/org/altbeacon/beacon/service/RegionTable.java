@@ -0,0 +1,83 @@
+package org.altbeacon.beacon.service;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Region;
+import org.altbeacon.beacon.RegionIndex;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the regions being ranged or monitored, with the state object of each
+ * region and an index for matching beacons against them.
+ *
+ * Changing the regions creates a new table, so a table can be read from any thread without
+ * locking.  The state objects are shared between successive tables and guard themselves.
+ */
+class RegionTable<S> {
+    private final Map<Region, S> mStates;
+    private final RegionIndex mIndex;
+
+    private RegionTable(Map<Region, S> states) {
+        mStates = Collections.unmodifiableMap(states);
+        mIndex = new RegionIndex();
+        for (Region region : states.keySet()) {
+            mIndex.add(region);
+        }
+    }
+
+    static <S> RegionTable<S> empty() {
+        return new RegionTable<S>(new HashMap<Region, S>());
+    }
+
+    /**
+     * @return a copy of this table in which the region has the given state.  A region with the same
+     * unique id is replaced, including its identifiers.
+     */
+    RegionTable<S> with(Region region, S state) {
+        Map<Region, S> states = new HashMap<Region, S>(mStates);
+        // remove first, otherwise the old region object is retained because they are .equal
+        states.remove(region);
+        states.put(region, state);
+        return new RegionTable<S>(states);
+    }
+
+    /**
+     * @return a copy of this table without the region, or this table if it does not have it
+     */
+    RegionTable<S> without(Region region) {
+        if (!mStates.containsKey(region)) {
+            return this;
+        }
+        Map<Region, S> states = new HashMap<Region, S>(mStates);
+        states.remove(region);
+        return new RegionTable<S>(states);
+    }
+
+    boolean contains(Region region) {
+        return mStates.containsKey(region);
+    }
+
+    S get(Region region) {
+        return mStates.get(region);
+    }
+
+    int size() {
+        return mStates.size();
+    }
+
+    Map<Region, S> getStates() {
+        return mStates;
+    }
+
+    List<Region> matchingRegions(Beacon beacon) {
+        return mIndex.matchingRegions(beacon);
+    }
+
+    void matchingRegions(Beacon beacon, Collection<Region> matched) {
+        mIndex.matchingRegions(beacon, matched);
+    }
+}
@@ -0,0 +1,11 @@
+package org.altbeacon.beacon.service;
+
+/**
+ * An RSSI filter that can be cleared for use with another beacon
+ */
+public interface ResettableRssiFilter extends RssiFilter {
+    /**
+     * Discards all measurements, leaving the filter as if it were new
+     */
+    public void reset();
+}
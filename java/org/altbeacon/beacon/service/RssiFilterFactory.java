@@ -0,0 +1,21 @@
+package org.altbeacon.beacon.service;
+
+/**
+ * Supplies the RSSI filter of each ranged beacon, and takes it back when the beacon is no longer
+ * tracked, so filters can be reused instead of created for every beacon that passes by.
+ *
+ * Both methods may be called from several threads at once.
+ *
+ * @see org.altbeacon.beacon.BeaconManager#setRssiFilterFactory(RssiFilterFactory)
+ */
+public interface RssiFilterFactory {
+    /**
+     * @return a filter without measurements
+     */
+    public RssiFilter create();
+
+    /**
+     * Called with a filter from {@link #create()} that is no longer used
+     */
+    public void recycle(RssiFilter filter);
+}
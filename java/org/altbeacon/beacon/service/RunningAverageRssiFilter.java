@@ -2,40 +2,63 @@ package org.altbeacon.beacon.service;
 
 import org.altbeacon.beacon.logging.LogManager;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.Iterator;
+import java.util.Arrays;
 
 /**
  * Calculate a RSSI value on base of an arbitrary list of measured RSSI values
  * The list is clipped by a certain length at start and end and the average
  * is calculate by simple arithmetic average
+ *
+ * Samples are kept in arrival order in a ring of primitives, and a histogram of their values is
+ * updated as they arrive and expire, so the clipped average is read off the histogram without
+ * sorting or allocating.
  */
-public class RunningAverageRssiFilter implements RssiFilter {
+public class RunningAverageRssiFilter implements ResettableRssiFilter {
 
     private static final String TAG = "RunningAverageRssiFilter";
     public static final long DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS = 20000; /* 20 seconds */
     private static long sampleExpirationMilliseconds = DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS;
-    private ArrayList<Measurement> mMeasurements = new ArrayList<Measurement>();
+    // The histogram covers the values a one byte RSSI can take
+    private static final int MIN_HISTOGRAM_RSSI = -128;
+    private static final int MAX_HISTOGRAM_RSSI = 127;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] mRssis = new int[INITIAL_CAPACITY];
+    private long[] mTimestamps = new long[INITIAL_CAPACITY];
+    private int mHead;
+    private int mSize;
+    private final int[] mHistogram = new int[MAX_HISTOGRAM_RSSI - MIN_HISTOGRAM_RSSI + 1];
+    // number of samples outside the histogram range
+    private int mOutOfRangeCount;
+    // false once the clock went backwards, so the oldest sample may not be the first to expire
+    private boolean mInTimeOrder = true;
 
     @Override
-    public void addMeasurement(Integer rssi) {
-        Measurement measurement = new Measurement();
-        measurement.rssi = rssi;
-        measurement.timestamp = new Date().getTime();
-        mMeasurements.add(measurement);
+    public synchronized void addMeasurement(Integer rssi) {
+        int value = rssi;
+        long timestamp = System.currentTimeMillis();
+        if (mSize == mRssis.length) {
+            grow();
+        }
+        if (mSize > 0 && timestamp < mTimestamps[index(mSize - 1)]) {
+            mInTimeOrder = false;
+        }
+        int index = index(mSize);
+        mRssis[index] = value;
+        mTimestamps[index] = timestamp;
+        mSize++;
+        count(value, 1);
     }
 
     @Override
-    public boolean noMeasurementsAvailable() {
-        return mMeasurements.size() == 0;
+    public synchronized boolean noMeasurementsAvailable() {
+        return mSize == 0;
     }
 
     @Override
-    public double calculateRssi() {
+    public synchronized double calculateRssi() {
         refreshMeasurements();
-        int size = mMeasurements.size();
+        int size = mSize;
         int startIndex = 0;
         int endIndex = size -1;
         if (size > 2) {
@@ -43,10 +66,7 @@ public class RunningAverageRssiFilter implements RssiFilter {
             endIndex = size-size/10-2;
         }
 
-        double sum = 0;
-        for (int i = startIndex; i <= endIndex; i++) {
-            sum += mMeasurements.get(i).rssi;
-        }
+        double sum = mOutOfRangeCount == 0 ? sumFromHistogram(startIndex, endIndex) : sumBySorting(startIndex, endIndex);
         double runningAverage = sum/(endIndex-startIndex+1);
 
         LogManager.d(TAG, "Running average mRssi based on %s measurements: %s",
@@ -54,31 +74,114 @@ public class RunningAverageRssiFilter implements RssiFilter {
         return runningAverage;
     }
 
-    private synchronized void refreshMeasurements() {
-        Date now = new Date();
-        ArrayList<Measurement> newMeasurements = new ArrayList<Measurement>();
-        Iterator<Measurement> iterator = mMeasurements.iterator();
-        while (iterator.hasNext()) {
-            Measurement measurement = iterator.next();
-            if (now.getTime() - measurement.timestamp < sampleExpirationMilliseconds ) {
-                newMeasurements.add(measurement);
+    @Override
+    public synchronized void reset() {
+        // the arrays keep their capacity for the next beacon
+        mHead = 0;
+        mSize = 0;
+        Arrays.fill(mHistogram, 0);
+        mOutOfRangeCount = 0;
+        mInTimeOrder = true;
+    }
+
+    private void refreshMeasurements() {
+        long now = System.currentTimeMillis();
+        if (mInTimeOrder) {
+            while (mSize > 0 && now - mTimestamps[mHead] >= sampleExpirationMilliseconds) {
+                count(mRssis[mHead], -1);
+                mHead = index(1);
+                mSize--;
+            }
+        }
+        else {
+            // keep the samples that have not expired, in order, and check the order again
+            int kept = 0;
+            mInTimeOrder = true;
+            for (int i = 0; i < mSize; i++) {
+                int from = index(i);
+                if (now - mTimestamps[from] < sampleExpirationMilliseconds) {
+                    int to = index(kept);
+                    if (kept > 0 && mTimestamps[from] < mTimestamps[index(kept - 1)]) {
+                        mInTimeOrder = false;
+                    }
+                    mRssis[to] = mRssis[from];
+                    mTimestamps[to] = mTimestamps[from];
+                    kept++;
+                }
+                else {
+                    count(mRssis[from], -1);
+                }
+            }
+            mSize = kept;
+        }
+        if (mSize == 0) {
+            mHead = 0;
+        }
+    }
+
+    // Sum of the values ranked startIndex to endIndex in ascending order
+    private double sumFromHistogram(int startIndex, int endIndex) {
+        double sum = 0;
+        int rank = 0;
+        for (int bucket = 0; bucket < mHistogram.length && rank <= endIndex; bucket++) {
+            int count = mHistogram[bucket];
+            if (count == 0) {
+                continue;
+            }
+            int first = Math.max(rank, startIndex);
+            int last = Math.min(rank + count - 1, endIndex);
+            if (first <= last) {
+                sum += (double) (bucket + MIN_HISTOGRAM_RSSI) * (last - first + 1);
             }
+            rank += count;
+        }
+        return sum;
+    }
+
+    private double sumBySorting(int startIndex, int endIndex) {
+        int[] sorted = new int[mSize];
+        for (int i = 0; i < mSize; i++) {
+            sorted[i] = mRssis[index(i)];
+        }
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (int i = startIndex; i <= endIndex; i++) {
+            sum += sorted[i];
         }
-        mMeasurements = newMeasurements;
-        Collections.sort(mMeasurements);
+        return sum;
     }
 
-    private class Measurement implements Comparable<Measurement> {
-        Integer rssi;
-        long timestamp;
-        @Override
-        public int compareTo(Measurement arg0) {
-            return rssi.compareTo(arg0.rssi);
+    private void count(int rssi, int delta) {
+        if (rssi < MIN_HISTOGRAM_RSSI || rssi > MAX_HISTOGRAM_RSSI) {
+            mOutOfRangeCount += delta;
         }
+        else {
+            mHistogram[rssi - MIN_HISTOGRAM_RSSI] += delta;
+        }
+    }
+
+    private int index(int offset) {
+        return (mHead + offset) % mRssis.length;
+    }
+
+    private void grow() {
+        int[] rssis = new int[mRssis.length * 2];
+        long[] timestamps = new long[mRssis.length * 2];
+        for (int i = 0; i < mSize; i++) {
+            rssis[i] = mRssis[index(i)];
+            timestamps[i] = mTimestamps[index(i)];
+        }
+        mRssis = rssis;
+        mTimestamps = timestamps;
+        mHead = 0;
     }
 
     public static void setSampleExpirationMilliseconds(long newSampleExpirationMilliseconds) {
         sampleExpirationMilliseconds = newSampleExpirationMilliseconds;
     }
 
+    static long getSampleExpirationMilliseconds() {
+        return sampleExpirationMilliseconds;
+    }
+
 }
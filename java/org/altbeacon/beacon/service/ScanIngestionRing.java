@@ -0,0 +1,365 @@
+package org.altbeacon.beacon.service;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.altbeacon.beacon.logging.LogManager;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded queue of raw scan results between the Bluetooth scan callbacks and the threads that
+ * parse them.
+ *
+ * All slots are allocated up front and the record bytes are copied into a buffer owned by the
+ * slot, so queueing a packet does not allocate.  Producers and consumers claim slots with
+ * compare-and-set on per-slot sequence numbers and never block each other.  When the queue is
+ * full, the configured {@link OverflowPolicy} decides which packet is lost, and every loss is
+ * counted.
+ *
+ * Packets are drained by long-lived worker threads started with {@link #start(int, Consumer)}.
+ */
+public class ScanIngestionRing {
+    private static final String TAG = "ScanIngestionRing";
+    public static final int DEFAULT_CAPACITY = 256;
+    // Legacy advertisement plus scan response, which is what Android hands us
+    private static final int DEFAULT_RECORD_SIZE = 62;
+
+    /**
+     * What to do with a packet that arrives when the queue is full
+     */
+    public enum OverflowPolicy {
+        /** Discard the oldest queued packet to make room.  Favors fresh RSSI readings. */
+        DROP_OLDEST,
+        /** Discard the arriving packet.  Favors packets already waiting. */
+        DROP_NEWEST,
+        /**
+         * Overwrite a queued packet from the same device with the arriving one, or discard the
+         * arriving packet if that device has nothing queued.
+         */
+        COALESCE_BY_DEVICE
+    }
+
+    /**
+     * Receives queued packets on a worker thread
+     */
+    public interface Consumer {
+        /**
+         * @param scanRecord the record bytes.  The array is reused by the worker once this
+         *                   returns, so it must be copied if it is kept.
+         */
+        public void onScan(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp);
+    }
+
+    private static int sCapacity = DEFAULT_CAPACITY;
+    private static OverflowPolicy sOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    private final int mMask;
+    private final OverflowPolicy mOverflowPolicy;
+    private final AtomicLongArray mSequences;
+    // 0 when free, 1 while a thread is copying a queued packet in or out of the slot
+    private final AtomicIntegerArray mGuards;
+    private final BluetoothDevice[] mDevices;
+    private final int[] mRssis;
+    private final long[] mTimestamps;
+    private final byte[][] mRecords;
+    private final int[] mRecordLengths;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+    // One permit per queued packet, so idle workers sleep instead of spinning
+    private final Semaphore mAvailable = new Semaphore(0);
+
+    private final AtomicLong mEnqueuedCount = new AtomicLong();
+    private final AtomicLong mProcessedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    private volatile boolean mClosed = false;
+    private Thread[] mWorkers = new Thread[0];
+
+    /**
+     * Sets the number of queued packets for rings created after this call.  It is rounded up to a
+     * power of two.
+     * @param capacity
+     */
+    public static void setDefaultCapacity(int capacity) {
+        sCapacity = capacity;
+    }
+
+    public static int getDefaultCapacity() {
+        return sCapacity;
+    }
+
+    /**
+     * Sets the overflow policy for rings created after this call
+     * @param policy
+     */
+    public static void setDefaultOverflowPolicy(OverflowPolicy policy) {
+        sOverflowPolicy = policy;
+    }
+
+    public static OverflowPolicy getDefaultOverflowPolicy() {
+        return sOverflowPolicy;
+    }
+
+    public ScanIngestionRing() {
+        this(sCapacity, sOverflowPolicy);
+    }
+
+    public ScanIngestionRing(int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mMask = size - 1;
+        mOverflowPolicy = overflowPolicy;
+        mSequences = new AtomicLongArray(size);
+        mGuards = new AtomicIntegerArray(size);
+        mDevices = new BluetoothDevice[size];
+        mRssis = new int[size];
+        mTimestamps = new long[size];
+        mRecords = new byte[size][];
+        mRecordLengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+            mRecords[i] = new byte[DEFAULT_RECORD_SIZE];
+        }
+    }
+
+    /**
+     * Queues a packet.  May be called from any thread.
+     * @return true if the packet was queued or coalesced, false if it was dropped
+     */
+    public boolean offer(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp) {
+        if (mClosed) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+        while (true) {
+            long position = mTail.get();
+            int index = (int) (position & mMask);
+            long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    write(index, device, rssi, scanRecord, timestamp);
+                    mSequences.set(index, position + 1);
+                    mEnqueuedCount.incrementAndGet();
+                    mAvailable.release();
+                    return true;
+                }
+            }
+            else if (difference < 0) {
+                // the slot still holds a packet from the previous lap, so the ring is full
+                switch (mOverflowPolicy) {
+                    case DROP_NEWEST:
+                        mDroppedCount.incrementAndGet();
+                        return false;
+                    case COALESCE_BY_DEVICE:
+                        if (coalesce(device, rssi, scanRecord, timestamp)) {
+                            mCoalescedCount.incrementAndGet();
+                            return true;
+                        }
+                        mDroppedCount.incrementAndGet();
+                        return false;
+                    case DROP_OLDEST:
+                    default:
+                        if (discardOldest()) {
+                            mDroppedCount.incrementAndGet();
+                        }
+                        else {
+                            // every queued packet is already being taken by a worker
+                            Thread.yield();
+                        }
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts worker threads that hand queued packets to the consumer until {@link #close()} is
+     * called.
+     */
+    public synchronized void start(int workerCount, final Consumer consumer) {
+        start(workerCount, consumer, "ScanIngestion-");
+    }
+
+    synchronized void start(int workerCount, final Consumer consumer, String threadNamePrefix) {
+        mWorkers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            mWorkers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain(consumer);
+                }
+            }, threadNamePrefix + i);
+            mWorkers[i].setDaemon(true);
+            mWorkers[i].start();
+        }
+    }
+
+    /**
+     * Stops the workers.  Packets still queued are discarded and counted as dropped.
+     */
+    public synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        for (Thread worker : mWorkers) {
+            worker.interrupt();
+        }
+        mDroppedCount.addAndGet(mTail.get() - mHead.get());
+    }
+
+    public long getEnqueuedCount() {
+        return mEnqueuedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return mProcessedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    /**
+     * @return the number of packets waiting to be processed
+     */
+    public int size() {
+        return (int) Math.max(0, mTail.get() - mHead.get());
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    private void drain(Consumer consumer) {
+        byte[] scanRecord = new byte[DEFAULT_RECORD_SIZE];
+        while (!mClosed) {
+            try {
+                mAvailable.acquire();
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            long position;
+            while ((position = claim()) < 0) {
+                // the packet at the head is still being written by its producer
+                if (mClosed) {
+                    return;
+                }
+                Thread.yield();
+            }
+            int index = (int) (position & mMask);
+            lock(index);
+            BluetoothDevice device = mDevices[index];
+            int rssi = mRssis[index];
+            long timestamp = mTimestamps[index];
+            int length = mRecordLengths[index];
+            // Parsers look at the array length, so hand over an array of exactly the record size.
+            // Records are nearly always the same size, so this rarely allocates.
+            if (scanRecord.length != length) {
+                scanRecord = new byte[length];
+            }
+            System.arraycopy(mRecords[index], 0, scanRecord, 0, length);
+            mDevices[index] = null;
+            mSequences.set(index, position + mMask + 1);
+            unlock(index);
+            try {
+                consumer.onScan(device, rssi, scanRecord, timestamp);
+            }
+            catch (RuntimeException e) {
+                LogManager.e(e, TAG, "Failed to process scan result");
+            }
+            mProcessedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the position of a queued packet now owned by the caller, or -1 if none is ready
+     */
+    private long claim() {
+        while (true) {
+            long position = mHead.get();
+            int index = (int) (position & mMask);
+            long difference = mSequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (mHead.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            }
+            else if (difference < 0) {
+                return -1;
+            }
+        }
+    }
+
+    private boolean discardOldest() {
+        if (!mAvailable.tryAcquire()) {
+            return false;
+        }
+        long position;
+        while ((position = claim()) < 0) {
+            Thread.yield();
+        }
+        int index = (int) (position & mMask);
+        lock(index);
+        mDevices[index] = null;
+        mSequences.set(index, position + mMask + 1);
+        unlock(index);
+        return true;
+    }
+
+    private boolean coalesce(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp) {
+        long tail = mTail.get();
+        for (long position = mHead.get(); position < tail; position++) {
+            int index = (int) (position & mMask);
+            if (mSequences.get(index) != position + 1 || !mGuards.compareAndSet(index, 0, 1)) {
+                continue;
+            }
+            // Holding the guard, the slot cannot be released, so this check is stable
+            boolean sameDevice = mSequences.get(index) == position + 1 && sameDevice(mDevices[index], device);
+            if (sameDevice) {
+                write(index, device, rssi, scanRecord, timestamp);
+            }
+            unlock(index);
+            if (sameDevice) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write(int index, BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp) {
+        int length = scanRecord == null ? 0 : scanRecord.length;
+        if (mRecords[index].length < length) {
+            mRecords[index] = new byte[length];
+        }
+        if (length > 0) {
+            System.arraycopy(scanRecord, 0, mRecords[index], 0, length);
+        }
+        mRecordLengths[index] = length;
+        mDevices[index] = device;
+        mRssis[index] = rssi;
+        mTimestamps[index] = timestamp;
+    }
+
+    private void lock(int index) {
+        while (!mGuards.compareAndSet(index, 0, 1)) {
+            Thread.yield();
+        }
+    }
+
+    private void unlock(int index) {
+        mGuards.set(index, 0);
+    }
+
+    private static boolean sameDevice(BluetoothDevice device1, BluetoothDevice device2) {
+        return device1 == null ? device2 == null : device1.equals(device2);
+    }
+}
@@ -0,0 +1,120 @@
+package org.altbeacon.beacon.service;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * Splits scan results between several {@link ScanIngestionRing}s by device address, each drained
+ * by a single worker thread.
+ *
+ * All packets from one device are processed in order by the same thread, so the state kept for
+ * that device's beacons, such as the RSSI filter of a ranged beacon or a cached duplicate, is
+ * never updated by two workers at once.  Different devices are still processed in parallel.
+ * Results from all shards only meet when ranging and monitoring data is collected at the end of
+ * a scan cycle.
+ */
+public class ShardedScanIngestion {
+    private static final int MIN_SHARD_CAPACITY = 16;
+
+    private final ScanIngestionRing[] mShards;
+
+    public ShardedScanIngestion(int shardCount) {
+        this(shardCount, ScanIngestionRing.getDefaultCapacity(), ScanIngestionRing.getDefaultOverflowPolicy());
+    }
+
+    /**
+     * @param shardCount number of worker threads
+     * @param capacity number of queued packets, divided between the shards
+     */
+    public ShardedScanIngestion(int shardCount, int capacity, ScanIngestionRing.OverflowPolicy overflowPolicy) {
+        int count = Math.max(1, shardCount);
+        mShards = new ScanIngestionRing[count];
+        for (int i = 0; i < count; i++) {
+            mShards[i] = new ScanIngestionRing(Math.max(MIN_SHARD_CAPACITY, capacity / count), overflowPolicy);
+        }
+    }
+
+    /**
+     * Starts one worker thread per shard
+     */
+    public void start(ScanIngestionRing.Consumer consumer) {
+        for (int i = 0; i < mShards.length; i++) {
+            mShards[i].start(1, consumer, "ScanShard-" + i + "-");
+        }
+    }
+
+    /**
+     * Queues a packet on the shard of its device.  May be called from any thread.
+     * @return true if the packet was queued or coalesced, false if it was dropped
+     */
+    public boolean offer(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp) {
+        return mShards[shardFor(device)].offer(device, rssi, scanRecord, timestamp);
+    }
+
+    public void close() {
+        for (ScanIngestionRing shard : mShards) {
+            shard.close();
+        }
+    }
+
+    public int getShardCount() {
+        return mShards.length;
+    }
+
+    /**
+     * @return the index of the shard that processes packets from the device
+     */
+    public int shardFor(BluetoothDevice device) {
+        if (mShards.length == 1 || device == null || device.getAddress() == null) {
+            return 0;
+        }
+        int hash = device.getAddress().hashCode();
+        // addresses differ mostly in their last characters, so spread those over all the bits
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return (hash & 0x7fffffff) % mShards.length;
+    }
+
+    public long getEnqueuedCount() {
+        long count = 0;
+        for (ScanIngestionRing shard : mShards) {
+            count += shard.getEnqueuedCount();
+        }
+        return count;
+    }
+
+    public long getProcessedCount() {
+        long count = 0;
+        for (ScanIngestionRing shard : mShards) {
+            count += shard.getProcessedCount();
+        }
+        return count;
+    }
+
+    public long getDroppedCount() {
+        long count = 0;
+        for (ScanIngestionRing shard : mShards) {
+            count += shard.getDroppedCount();
+        }
+        return count;
+    }
+
+    public long getCoalescedCount() {
+        long count = 0;
+        for (ScanIngestionRing shard : mShards) {
+            count += shard.getCoalescedCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of packets waiting in all shards
+     */
+    public int size() {
+        int size = 0;
+        for (ScanIngestionRing shard : mShards) {
+            size += shard.size();
+        }
+        return size;
+    }
+}
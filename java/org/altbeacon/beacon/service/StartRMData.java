@@ -25,6 +25,7 @@ package org.altbeacon.beacon.service;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.Process;
 
 import org.altbeacon.beacon.Region;
 
@@ -34,6 +35,7 @@ public class StartRMData implements Parcelable {
     private long betweenScanPeriod;
     private boolean backgroundFlag;
     private String callbackPackageName;
+    private int callbackProcessId = Process.myPid();
 
     public StartRMData(Region region, String callbackPackageName) {
         this.region = region;
@@ -63,6 +65,12 @@ public class StartRMData implements Parcelable {
         return callbackPackageName;
     }
     public boolean getBackgroundFlag() { return backgroundFlag; }
+
+    /**
+     * @return id of the process that sent the request, used to make callbacks directly when it is
+     * the process the service runs in
+     */
+    public int getCallbackProcessId() { return callbackProcessId; }
     public int describeContents() {
         return 0;
     }
@@ -73,6 +81,7 @@ public class StartRMData implements Parcelable {
         out.writeLong(scanPeriod);
         out.writeLong(betweenScanPeriod);
         out.writeByte((byte) (backgroundFlag ? 1 : 0));
+        out.writeInt(callbackProcessId);
     }
 
     public static final Parcelable.Creator<StartRMData> CREATOR
@@ -92,6 +101,7 @@ public class StartRMData implements Parcelable {
         scanPeriod = in.readLong();
         betweenScanPeriod = in.readLong();
         backgroundFlag = in.readByte() != 0;
+        callbackProcessId = in.readInt();
     }
 
 }
@@ -7,5 +7,10 @@ import android.bluetooth.BluetoothDevice;
  */
 public interface CycledLeScanCallback {
     public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord);
+    /**
+     * Delivers results that the scanner collected together, such as hardware batched scan
+     * results.  The first <code>count</code> entries of the arrays are valid.
+     */
+    public void onLeScanBatch(BluetoothDevice[] devices, int[] rssis, byte[][] scanRecords, int count);
     public void onCycleEnd();
 }
@@ -2,6 +2,7 @@ package org.altbeacon.beacon.service.scanner;
 
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
 import android.bluetooth.le.ScanFilter;
@@ -242,10 +243,17 @@ public class CycledLeScannerForLollipop extends CycledLeScanner {
                 @Override
                 public void onBatchScanResults(List<ScanResult> results) {
                     LogManager.d(TAG, "got batch records");
-                    for (ScanResult scanResult : results) {
-                        mCycledLeScanCallback.onLeScan(scanResult.getDevice(),
-                                scanResult.getRssi(), scanResult.getScanRecord().getBytes());
+                    int count = results.size();
+                    BluetoothDevice[] devices = new BluetoothDevice[count];
+                    int[] rssis = new int[count];
+                    byte[][] scanRecords = new byte[count][];
+                    for (int i = 0; i < count; i++) {
+                        ScanResult scanResult = results.get(i);
+                        devices[i] = scanResult.getDevice();
+                        rssis[i] = scanResult.getRssi();
+                        scanRecords[i] = scanResult.getScanRecord().getBytes();
                     }
+                    mCycledLeScanCallback.onLeScanBatch(devices, rssis, scanRecords, count);
                     if (mBackgroundLScanStartTime > 0) {
                         LogManager.d(TAG, "got a filtered batch scan result in the background.");
                     }
@@ -0,0 +1,151 @@
+package org.altbeacon.bluetooth;
+
+/**
+ * Steps through the AD structures ("PDUs") of a BLE advertisement in place, exposing the type and
+ * bounds of the current structure as primitives.  Nothing is allocated while stepping, so a single
+ * cursor can be reused for every packet, and callers can stop as soon as they find the structure
+ * they want.
+ *
+ * The walk follows the same rules as {@link Pdu#parse(byte[], int)}: a zero length ends the
+ * record, and a structure that runs past the end of the array is truncated.  The length byte is
+ * read as unsigned and there is no limit on the record size, so extended advertising payloads
+ * longer than the 31 bytes of a legacy advertisement are walked to their end.
+ *
+ * Usage:
+ * <pre>
+ * cursor.reset(scanRecord);
+ * while (cursor.next()) {
+ *     if (cursor.getType() == Pdu.MANUFACTURER_DATA_PDU_TYPE) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public class AdStructureCursor {
+    private byte[] mBytes;
+    private int mLimit;
+    private int mNextIndex;
+    private byte mType;
+    private int mDeclaredLength;
+    private int mStartIndex;
+    private int mEndIndex;
+
+    public AdStructureCursor() {
+    }
+
+    public AdStructureCursor(byte[] bytes) {
+        reset(bytes);
+    }
+
+    /**
+     * Positions the cursor before the first structure of a record
+     * @param bytes the record bytes
+     * @return this cursor
+     */
+    public AdStructureCursor reset(byte[] bytes) {
+        return reset(bytes, 0, bytes == null ? 0 : bytes.length);
+    }
+
+    /**
+     * Positions the cursor before the first structure in part of an array
+     * @param bytes array holding the record
+     * @param offset index of the first length byte
+     * @param length number of bytes from the offset that belong to the record
+     * @return this cursor
+     */
+    public AdStructureCursor reset(byte[] bytes, int offset, int length) {
+        mBytes = bytes;
+        mNextIndex = offset;
+        mLimit = bytes == null ? 0 : Math.min(bytes.length, offset + length);
+        mType = 0;
+        mDeclaredLength = 0;
+        mStartIndex = -1;
+        mEndIndex = -1;
+        return this;
+    }
+
+    /**
+     * Advances to the next structure
+     * @return false if there are no more structures, in which case the getters are undefined
+     */
+    public boolean next() {
+        int index = mNextIndex;
+        if (mLimit - index < 2) {
+            return false;
+        }
+        int length = mBytes[index] & 0xff;
+        int firstIndex = index + 2;
+        if (length == 0 || firstIndex >= mLimit) {
+            mNextIndex = mLimit;
+            return false;
+        }
+        mType = mBytes[index + 1];
+        mDeclaredLength = length;
+        mStartIndex = firstIndex;
+        // The length field does not count itself, so the structure ends at index + length
+        mEndIndex = Math.min(index + length, mLimit - 1);
+        mNextIndex = index + length + 1;
+        return true;
+    }
+
+    /**
+     * Advances to the next structure of the given type, skipping others
+     * @return false if there are no more structures of that type
+     */
+    public boolean next(byte type) {
+        while (next()) {
+            if (mType == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public byte[] getBytes() {
+        return mBytes;
+    }
+
+    public byte getType() {
+        return mType;
+    }
+
+    public int getDeclaredLength() {
+        return mDeclaredLength;
+    }
+
+    /**
+     * @return the number of data bytes actually present, which is less than the declared length
+     * minus one if the structure is truncated
+     */
+    public int getActualLength() {
+        return mEndIndex - mStartIndex + 1;
+    }
+
+    /**
+     * @return index of the first data byte, just past the type byte
+     */
+    public int getStartIndex() {
+        return mStartIndex;
+    }
+
+    /**
+     * @return index of the last data byte, inclusive
+     */
+    public int getEndIndex() {
+        return mEndIndex;
+    }
+
+    /**
+     * Reads a little endian 16 bit value from the data of the current structure, such as the
+     * company identifier of manufacturer data or the UUID of service data
+     * @param offset offset from the first data byte
+     * @return the value, or -1 if the structure is too short
+     */
+    public int getUint16(int offset) {
+        int index = mStartIndex + offset;
+        if (offset < 0 || index + 1 > mEndIndex) {
+            return -1;
+        }
+        return (mBytes[index] & 0xff) | ((mBytes[index + 1] & 0xff) << 8);
+    }
+}
@@ -1,7 +1,5 @@
 package org.altbeacon.bluetooth;
 
-import android.util.Log;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,16 +19,10 @@ public class BleAdvertisement {
     }
     private List<Pdu> parsePdus() {
         ArrayList<Pdu> pdus = new ArrayList<Pdu>();
-        Pdu pdu = null;
-        int index = 0;
-        do {
-            pdu = Pdu.parse(mBytes, index);
-            if (pdu != null) {
-                index = index + pdu.getDeclaredLength()+1;
-                pdus.add(pdu);
-            }
+        AdStructureCursor cursor = new AdStructureCursor(mBytes);
+        while (cursor.next()) {
+            pdus.add(Pdu.fromCursor(cursor));
         }
-        while (pdu != null && index < mBytes.length);
         return pdus;
     }
 
@@ -27,35 +27,24 @@ public class Pdu {
 
     @TargetApi(Build.VERSION_CODES.GINGERBREAD)
     public static Pdu parse(byte[] bytes, int startIndex) {
-        Pdu pdu = null;
-        if (bytes.length-startIndex >= 2) {
-            byte length = bytes[startIndex];
-            if (length > 0) {
-                byte type = bytes[startIndex + 1];
-                int firstIndex = startIndex + 2;
-                if (firstIndex < bytes.length) {
-                    pdu = new Pdu();
-                    // The End index is the startIndex + the length, because the first byte is the
-                    // length field and the length field does not include the length field itself in
-                    // the count
-                    pdu.mEndIndex = startIndex + length;
-                    if (pdu.mEndIndex >= bytes.length) {
-                        pdu.mEndIndex = bytes.length - 1;
-                    }
-                    pdu.mType = type;
-                    pdu.mDeclaredLength = length;
-                    pdu.mStartIndex = firstIndex;
-                    pdu.mBytes = bytes;
-                }
-            }
-        }
-        return pdu;
+        AdStructureCursor cursor = new AdStructureCursor();
+        cursor.reset(bytes, startIndex, bytes.length - startIndex);
+        return cursor.next() ? fromCursor(cursor) : null;
     }
 
     /**
-     * PDU type field
-     * @return
+     * Copies the structure the cursor is positioned on
      */
+    static Pdu fromCursor(AdStructureCursor cursor) {
+        Pdu pdu = new Pdu();
+        pdu.mType = cursor.getType();
+        pdu.mDeclaredLength = cursor.getDeclaredLength();
+        pdu.mStartIndex = cursor.getStartIndex();
+        pdu.mEndIndex = cursor.getEndIndex();
+        pdu.mBytes = cursor.getBytes();
+        return pdu;
+    }
+
     public byte getType() {
         return mType;
     }